@@ -0,0 +1,288 @@
+import java.util.*;
+
+/**
+ * Class BalanceRanking keeps accounts sorted by balance, richest first, in
+ * a treap (a binary search tree kept balanced by random priorities) where
+ * every node knows the size of its subtree. Changing the balance of an
+ * account, finding the richest accounts, the rank of an account and its
+ * percentile all take O(log n) time for n accounts. Accounts with the same
+ * balance are ordered by name.
+ *
+ * @author Said Ghamra
+ * @version 1.0
+ */
+public class BalanceRanking {
+
+	/**
+	 * Class Node is one account in the treap.
+	 */
+	private static class Node {
+
+		// Instance Variables
+		private String name;         // Name of the account
+		private int balance;        // Balance of the account
+		private int priority;      // Random priority, a parent's is never lower than its children's
+		private int size;         // Number of nodes in the subtree of this node
+		private Node left;       // Richer accounts
+		private Node right;     // Poorer accounts
+
+		private Node(String name, int balance, int priority) {
+
+			this.name = name;
+			this.balance = balance;
+			this.priority = priority;
+			this.size = 1;
+		}
+	}
+
+	// Instance Variables
+	private Node root;                      // Root of the treap
+	private HashMap<String, Node> nodes;   // Node of every account, to find its current balance
+	private Random random;                // Random number generator giving the priorities
+
+	/**
+	 * Constructor method for the class BalanceRanking. Creates an empty ranking.
+	 */
+	public BalanceRanking() {
+
+		this.nodes = new HashMap<String, Node>();
+		this.random = new Random(2110);
+	}
+
+	/**
+	 * Method to set the balance of an account, adding the account to the
+	 * ranking if it isn't in it yet.
+	 *
+	 * @param name    String containing the name of the account.
+	 * @param balance int containing the new balance of the account.
+	 */
+	public void update(String name, int balance) {
+
+		Node node = nodes.get(name);
+
+		if (node!=null) {
+
+			if (node.balance==balance) {
+
+				return;
+			}
+
+			// Taking the node out of the tree: everything before it, and everything after it
+			Node[] before = split(root, node.balance, name, false);
+			Node[] after = split(before[1], node.balance, name, true);
+			root = merge(before[0], after[1]);
+		}
+
+		node = new Node(name, balance, random.nextInt());
+		nodes.put(name, node);
+
+		Node[] parts = split(root, balance, name, false);
+		root = merge(merge(parts[0], node), parts[1]);
+	}
+
+	/**
+	 * Getter method for the richest accounts.
+	 *
+	 * @param  n int containing the number of accounts wanted.
+	 * @return   an ArrayList containing the names of the n richest accounts, richest first.
+	 */
+	public ArrayList<String> top(int n) {
+
+		ArrayList<String> names = new ArrayList<String>();
+		collect(root, Math.max(0, n), names);
+
+		return names;
+	}
+
+	/**
+	 * Getter method for the rank of an account, 1 being the richest.
+	 *
+	 * @param  name String containing the name of the account.
+	 * @return      an int containing the rank of the account, 0 if it isn't ranked.
+	 */
+	public int rank(String name) {
+
+		Node node = nodes.get(name);
+
+		if (node==null) {
+
+			return 0;
+		}
+
+		// Counting the accounts ordered before this one
+		int before = 0;
+		Node current = root;
+
+		while (current!=node) {
+
+			if (compare(node.balance, node.name, current)<0) {
+
+				current = current.left;
+			}
+
+			else {
+
+				before += size(current.left)+1;
+				current = current.right;
+			}
+		}
+
+		return before+size(node.left)+1;
+	}
+
+	/**
+	 * Getter method for the percentile of an account, i.e. the percentage
+	 * of ranked accounts whose balance is lower than its balance.
+	 *
+	 * @param  name String containing the name of the account.
+	 * @return      a double between 0 and 100, or 0 if the account isn't ranked.
+	 */
+	public double percentile(String name) {
+
+		Node node = nodes.get(name);
+
+		if (node==null) {
+
+			return 0;
+		}
+
+		// Counting the accounts whose balance is at least the balance of this one
+		int atLeast = 0;
+		Node current = root;
+
+		while (current!=null) {
+
+			if (current.balance>=node.balance) {
+
+				atLeast += size(current.left)+1;
+				current = current.right;
+			}
+
+			else {
+
+				current = current.left;
+			}
+		}
+
+		return 100.0*(size()-atLeast)/size();
+	}
+
+	/**
+	 * Getter method for the number of ranked accounts.
+	 *
+	 * @return an int containing the number of accounts.
+	 */
+	public int size() {
+
+		return size(root);
+	}
+
+	/**
+	 * Compares an account to a node: negative if the account comes first
+	 * (it is richer, or as rich with a smaller name), positive if it comes after.
+	 */
+	private static int compare(int balance, String name, Node node) {
+
+		if (balance!=node.balance) {
+
+			return balance>node.balance ? -1 : 1;
+		}
+
+		return name.compareTo(node.name);
+	}
+
+	/**
+	 * Splits a tree in the nodes coming before an account and the others.
+	 * If inclusive is true, the account itself goes with the nodes before it.
+	 */
+	private static Node[] split(Node node, int balance, String name, boolean inclusive) {
+
+		if (node==null) {
+
+			return new Node[] { null, null };
+		}
+
+		int c = compare(balance, name, node);
+
+		// The node comes before the account
+		if (c>0 || (c==0 && inclusive)) {
+
+			Node[] parts = split(node.right, balance, name, inclusive);
+			node.right = parts[0];
+			resize(node);
+
+			return new Node[] { node, parts[1] };
+		}
+
+		Node[] parts = split(node.left, balance, name, inclusive);
+		node.left = parts[1];
+		resize(node);
+
+		return new Node[] { parts[0], node };
+	}
+
+	/**
+	 * Joins two trees, every node of the first one coming before every
+	 * node of the second one.
+	 */
+	private static Node merge(Node first, Node second) {
+
+		if (first==null) {
+
+			return second;
+		}
+
+		if (second==null) {
+
+			return first;
+		}
+
+		if (first.priority>=second.priority) {
+
+			first.right = merge(first.right, second);
+			resize(first);
+
+			return first;
+		}
+
+		second.left = merge(first, second.left);
+		resize(second);
+
+		return second;
+	}
+
+	/**
+	 * Adds the names of the first n nodes of a tree, in order, to a list.
+	 */
+	private static void collect(Node node, int n, ArrayList<String> names) {
+
+		if (node==null || names.size()>=n) {
+
+			return;
+		}
+
+		collect(node.left, n, names);
+
+		if (names.size()<n) {
+
+			names.add(node.name);
+			collect(node.right, n, names);
+		}
+	}
+
+	/**
+	 * Returns the number of nodes in a tree, 0 for an empty one.
+	 */
+	private static int size(Node node) {
+
+		return node==null ? 0 : node.size;
+	}
+
+	/**
+	 * Updates the size of a node after its children changed.
+	 */
+	private static void resize(Node node) {
+
+		node.size = size(node.left)+size(node.right)+1;
+	}
+}
@@ -11,6 +11,9 @@ import java.util.*;
  */
 public class Block {
 	
+	// Constants
+	public static final int DEFAULT_DIFFICULTY = 5;    // Number of zeros every hash begins with, unless a blockchain says otherwise
+
 	// Instance Variables
 	private int index; 							// The index of the block in the list
 	private java.sql.Timestamp timestamp;      // Time at which the transaction has been processed
@@ -18,6 +21,7 @@ public class Block {
 	private String nonce;                    // Random string for proof of work
 	private String previousHash;            // Previous hash
 	private String hash;                   // Hash of the block
+	private String target;                // The hash has to begin with this string, one zero per level of difficulty
 
 	/**
 	 * Constructor method for the class Block.
@@ -30,6 +34,24 @@ public class Block {
 	 */
 	public Block (int index, java.sql.Timestamp timestamp,  Transaction transaction, String nonce, String previousHash) {
 
+		this(index, timestamp, transaction, nonce, previousHash, DEFAULT_DIFFICULTY);
+	}
+
+	/**
+	 * Constructor method for a block of a blockchain mined at another
+	 * difficulty than the default, such as a test chain written by
+	 * ChainGenerator. If the nonce doesn't give a hash with that many
+	 * zeros, a new nonce is mined.
+	 * 
+	 * @param  index        Int containing the index of the block in the list.
+	 * @param  timestamp    Timestamp object containing the time the transaction was made.
+	 * @param  transaction  Transaction object containing the transaction details.
+	 * @param  nonce        String containing the nonce of the block.
+	 * @param  previousHash String containing the previous hash of the block.
+	 * @param  difficulty   Int containing the number of zeros the hash has to begin with.
+	 */
+	public Block (int index, java.sql.Timestamp timestamp,  Transaction transaction, String nonce, String previousHash, int difficulty) {
+
 		if (index<0) {
 
 			throw new IllegalArgumentException("Index can't be negative!!");
@@ -46,10 +68,39 @@ public class Block {
 			this.nonce=nonce;
 			this.previousHash=previousHash;
 			this.transaction=transaction;
+			this.target=target(difficulty);
 			this.hash=generateHash();
 		}
 	}
 
+	/**
+	 * Constructor method for a block whose hash is already known, such as
+	 * a block read back from a BlockStore. The hash is trusted as it is
+	 * and no proof of work is done.
+	 * 
+	 * @param  index        Int containing the index of the block in the list.
+	 * @param  timestamp    Timestamp object containing the time the transaction was made.
+	 * @param  transaction  Transaction object containing the transaction details, null for a pruned block.
+	 * @param  nonce        String containing the nonce of the block.
+	 * @param  previousHash String containing the previous hash of the block.
+	 * @param  hash         String containing the hash of the block.
+	 */
+	Block (int index, java.sql.Timestamp timestamp, Transaction transaction, String nonce, String previousHash, String hash) {
+
+		if (index<0) {
+
+			throw new IllegalArgumentException("Index can't be negative!!");
+		}
+
+		this.index=index;
+		this.timestamp=timestamp;
+		this.transaction=transaction;
+		this.nonce=nonce;
+		this.previousHash=previousHash;
+		this.hash=hash;
+		this.target=target(DEFAULT_DIFFICULTY);
+	}
+
 	/**
 	 * Method that enables printing out an instance of the class Block.
 	 * 
@@ -63,7 +114,7 @@ public class Block {
 
 	/**
 	 * This method generates the hash of a block. The hash of a block 
-	 * should contain 00000 in the beginning. It sends the string representation 
+	 * should contain 00000 (or as many zeros as its difficulty) in the beginning. It sends the string representation 
 	 * of the block using the Class Blocks toString() method to the Class 
 	 * Sha1 that encrypts it. The Nonce is a randomly generated String that can range
 	 * from 1 to 20 characters in length containing ASCII charachers in the integer 
@@ -77,40 +128,55 @@ public class Block {
 		int numberTrials=0;    // Variable numberTrials used to track how many trial runs does it take to generate a nonce that results in a hash beginning with 5 zeros
 
 		try {
-			
+
+			// Variable hash holds the hash of the block with the nonce it currently has
+			String hash = Sha1.hash(toString());
+
 			// Ensures the algorithm keeps running until the hash of the block contains five zeros in the beginning
-        	while(!(Sha1.hash(toString()).substring(0,5).equals("00000"))) {
-        		
-        		Random r = new Random();
-
-        		// This for loop controls the length of the nonce being generated randomly		
-        		for (int x=1; x<=20; x++) {
-        			
-        			// Increment the numberTrials variable everytime a trial is made
-        			numberTrials++;
-
-        			// Resetting the value of returnHash after every run
-        			returnHash="";
-
-        			// This for loop adds x many characters to the variable returnHash which holds the temporary nonce 
-        			for (int i=0; i<x; i++) {
-					
-						returnHash+=((char)(r.nextInt(94)+33));        			
-        			}
-
-        			// Setting the nonce of this block to the string that was just generated
-        			nonce=returnHash;
-
-        			// If the hash contains five zeros in the beginning, stop the for loop
-        			if ((Sha1.hash(toString()).substring(0,5).equals("00000"))) {
-
-        				break;
-        			}
-        		}
-        	}
-
-        	// Setting the value of the variable returnHash to the hash that is going to be returned
-        	returnHash=Sha1.hash(toString());
+			while(!(hash.startsWith(target))) {
+
+				Random r = new Random();
+				String[] nonces = new String[20];         // The nonces tried in this run, one of every length
+				String[] candidates = new String[20];    // The string representation of the block with every nonce tried
+
+				// This for loop controls the length of the nonce being generated randomly
+				for (int x=1; x<=20; x++) {
+
+					// Increment the numberTrials variable everytime a trial is made
+					numberTrials++;
+
+					// Resetting the value of returnHash after every run
+					returnHash="";
+
+					// This for loop adds x many characters to the variable returnHash which holds the temporary nonce 
+					for (int i=0; i<x; i++) {
+
+						returnHash+=((char)(r.nextInt(94)+33));
+					}
+
+					// Setting the nonce of this block to the string that was just generated and keeping the resulting candidate
+					nonce=returnHash;
+					nonces[x-1]=returnHash;
+					candidates[x-1]=toString();
+				}
+
+				// Hashing all the candidates of this run together in one call
+				String[] hashes = Sha1Batch.hash(candidates);
+
+				// The first candidate whose hash contains five zeros in the beginning gives the nonce of this block
+				for (int x=0; x<20; x++) {
+
+					if (hashes[x].startsWith(target)) {
+
+						nonce=nonces[x];
+						hash=hashes[x];
+						break;
+					}
+				}
+			}
+
+			// Setting the value of the variable returnHash to the hash that is going to be returned
+			returnHash=hash;
 		}
 
 		catch (Exception e) {
@@ -124,6 +190,25 @@ public class Block {
 		return returnHash;	
 	}
 
+	/**
+	 * Method to get the string every hash has to begin with at a certain
+	 * difficulty of the proof of work, i.e. a number of zeros. The default
+	 * is 5. A lower difficulty is only meant for building large test chains
+	 * quickly, and is written to their files so they are read back with it.
+	 * 
+	 * @param  difficulty int containing the number of zeros, between 0 and 40.
+	 * @return            a String containing as many zeros as the difficulty.
+	 */
+	public static String target(int difficulty) {
+
+		if (difficulty<0 || difficulty>40) {
+
+			throw new IllegalArgumentException("Difficulty has to be between 0 and 40!!");
+		}
+
+		return "0000000000000000000000000000000000000000".substring(0, difficulty);
+	}
+
 	/**
 	 * Getter method for the index of the block.
 	 * 
@@ -149,13 +234,24 @@ public class Block {
 	 * Getter method for the transaction of the block.
 	 * 
 	 * @return a transaction object containing the transaction 
-	 * details of this block.
+	 * details of this block, or null if the block was pruned.
 	 */
 	public Transaction getTransaction() {
 
 		return transaction;
 	}	
 
+	/**
+	 * Method to check whether the transaction of the block was pruned,
+	 * leaving only its header (index, timestamp, nonce and hashes).
+	 * 
+	 * @return true if the block has no transaction, false otherwise.
+	 */
+	public boolean isPruned() {
+
+		return transaction==null;
+	}
+
 	/**
 	 * Getter method for the nonce of the block.
 	 * 
@@ -1,4 +1,5 @@
 import java.util.*;
+import java.util.concurrent.*;
 import java.io.*;
 import java.sql.*;
 
@@ -13,30 +14,458 @@ import java.sql.*;
  */
 public class BlockChain {
 
+	// Constants
+	private static final int PARALLEL_CHUNK_SIZE = 1024;    // Number of blocks parsed by a thread at a time in fromFileParallel
+	private static final int DEFAULT_FILTER_ITEMS = 1 << 16;      // Number of transactions the Bloom filter is sized for until the blockchain outgrows it
+	private static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01; // False positive rate of the Bloom filter by default
+
 	// Instance Variables
 	private ArrayList<Block> blocks;             // ArrayList containing all the blocks of the blockchain.
 	private ArrayList<String> givenHashes;		// ArrayList containing all the hashes included in the textfile
+	private BlockStore store;                  // BlockStore keeping the blocks on disk, null when the blocks are kept in memory
+	private VersionedLedger ledger;           // Balance of every user at every block
+	private BloomFilter transactionFilter;   // Fingerprints of every transaction in the blockchain
+	private int filterItems;                // Number of transactions the Bloom filter is sized for
+	private double filterRate;             // False positive rate the Bloom filter is sized for
+	private HashMap<Long, Integer> transactionIndex; // Hash of every fingerprint, mapped to the position of the last block holding it
+	private int[] sameFingerprint;                  // For every block, 1 + the position of the block before it with the same hash, 0 if none
+	private int prunedHeight;              // Number of blocks at the start of the blockchain whose transactions were pruned
+	private LinkedHashMap<String, Integer> snapshot; // Balance of every user after the pruned blocks
+	private String snapshotDigest;                  // Digest of the snapshot recorded when the blockchain was pruned, null if it wasn't
+	private BalanceRanking ranking;      // Every user besides bitcoin, sorted by balance
+	private int difficulty;             // Number of zeros the hash of every block begins with
 
 	/**
 	 * Constructor method for the class BlockChain. Initializes
-	 * the ArrayLists blocks and givenHashes.
+	 * the ArrayLists blocks and givenHashes and the ledger.
 	 */
 	public BlockChain () {
 
 		this.blocks = new ArrayList<Block>();
 		this.givenHashes = new ArrayList<String>();
+		this.ledger = new VersionedLedger(VersionedLedger.DEFAULT_SNAPSHOT_INTERVAL);
+		this.transactionIndex = new HashMap<Long, Integer>();
+		this.sameFingerprint = new int[1024];
+		configureFilters(DEFAULT_FILTER_ITEMS, DEFAULT_FALSE_POSITIVE_RATE);
+		this.snapshot = new LinkedHashMap<String, Integer>();
+		this.ranking = new BalanceRanking();
+		this.difficulty = Block.DEFAULT_DIFFICULTY;
 	}
 
 	/**
-	 * Method to add a block to the BlockChain.
+	 * Constructor method for a BlockChain whose blocks are kept on disk
+	 * in a BlockStore. At most cacheCapacity blocks are kept in memory,
+	 * which lets the blockchain grow larger than the memory available.
+	 * 
+	 * @param  storeFile     String containing the name of the file the blocks are stored in.
+	 * @param  cacheCapacity Int containing the maximum number of blocks kept in memory.
+	 * @throws IOException   if the file can't be created.
+	 */
+	public BlockChain (String storeFile, int cacheCapacity) throws IOException {
+
+		this.store = new BlockStore(storeFile, cacheCapacity, BlockStore.DEFAULT_READ_AHEAD);
+		this.ledger = new VersionedLedger(VersionedLedger.DEFAULT_SNAPSHOT_INTERVAL);
+		this.transactionIndex = new HashMap<Long, Integer>();
+		this.sameFingerprint = new int[1024];
+		configureFilters(DEFAULT_FILTER_ITEMS, DEFAULT_FALSE_POSITIVE_RATE);
+		this.snapshot = new LinkedHashMap<String, Integer>();
+		this.ranking = new BalanceRanking();
+		this.difficulty = Block.DEFAULT_DIFFICULTY;
+	}
+
+	/**
+	 * Method to add a block to the BlockChain. The hash of the
+	 * block is used as its given hash.
 	 * 
 	 * @param block Block object to be added.
 	 */
 	public void add(Block block) {
 
-		blocks.add(block);
+		add(block, block.getHash());
 	}	
 
+	/**
+	 * Method to add a block to the BlockChain along with the hash
+	 * that was given for it in the file it was read from.
+	 * 
+	 * @param block     Block object to be added.
+	 * @param givenHash String containing the hash given for the block.
+	 */
+	void add(Block block, String givenHash) {
+
+		// If the blocks are kept on disk, write the block to the store
+		if (store!=null) {
+
+			try {
+
+				store.append(block, givenHash);
+			}
+
+			catch (IOException e) {
+
+				throw new UncheckedIOException("Couldn't write block " + block.getIndex() + " to disk", e);
+			}
+		}
+
+		else {
+
+			blocks.add(block);
+			givenHashes.add(givenHash);
+		}
+
+		// Recording the transaction of the block in the ledger and the index. Pruned blocks are accounted for by the snapshot.
+		if (!block.isPruned()) {
+
+			ledger.append(block.getTransaction());
+			addToIndex(block, getBlockNumbers()-1);
+			rank(block.getTransaction().getSender());
+			rank(block.getTransaction().getReceiver());
+		}
+	}
+
+	/**
+	 * Updates the balance of a user in the ranking. bitcoin isn't ranked,
+	 * since its balance is the amount of bitcoin in circulation.
+	 */
+	private void rank(String username) {
+
+		if (!(username.equals("bitcoin"))) {
+
+			ranking.update(username, ledger.getBalance(username));
+		}
+	}
+
+	/**
+	 * The method getRichest returns the users with the largest balances,
+	 * without reading any block. bitcoin is not included.
+	 * 
+	 * @param  n int containing the number of users wanted.
+	 * @return   an ArrayList containing the names of the n richest users, richest first.
+	 */
+	public ArrayList<String> getRichest(int n) {
+
+		return ranking.top(n);
+	}
+
+	/**
+	 * The method getRank returns the position of a user when all the users
+	 * besides bitcoin are sorted by balance, 1 being the richest. Users with
+	 * the same balance are sorted by name.
+	 * 
+	 * @param  username String containing the name of the user.
+	 * @return          an int containing the rank of the user, 0 if the user isn't ranked.
+	 */
+	public int getRank(String username) {
+
+		return ranking.rank(username);
+	}
+
+	/**
+	 * The method getPercentile returns the percentage of users besides
+	 * bitcoin whose balance is lower than the balance of a user.
+	 * 
+	 * @param  username String containing the name of the user.
+	 * @return          a double between 0 and 100, 0 if the user isn't ranked.
+	 */
+	public double getPercentile(String username) {
+
+		return ranking.percentile(username);
+	}
+
+	/**
+	 * Adds the fingerprint of the transaction of a block to the Bloom filter
+	 * and to the index, the block becoming the last one with its hash. The
+	 * filter is sized again for twice as many transactions once it is full.
+	 */
+	private void addToIndex(Block block, int position) {
+
+		if (transactionIndex.size()>=filterItems) {
+
+			configureFilters((int) Math.min(2L*filterItems, Integer.MAX_VALUE), filterRate);
+		}
+
+		long key = BloomFilter.hash(fingerprint(block.getTransaction(), block.getTimeStamp()));
+		Integer last = transactionIndex.put(key, position);
+
+		if (position>=sameFingerprint.length) {
+
+			sameFingerprint = Arrays.copyOf(sameFingerprint, Math.max(position+1, 2*sameFingerprint.length));
+		}
+
+		sameFingerprint[position] = last==null ? 0 : last+1;
+		transactionFilter.add(key);
+	}
+
+	/**
+	 * Returns the fingerprint of a transaction made at a certain time,
+	 * made of its sender, receiver, amount and timestamp.
+	 */
+	private static String fingerprint(Transaction trans, Timestamp timestamp) {
+
+		return trans.getSender() + "\u0000" + trans.getReceiver() + "\u0000" + trans.getAmount() + "\u0000" + timestamp.getTime();
+	}
+
+	/**
+	 * The method hasAccount checks whether a user appears in the blockchain,
+	 * or in its snapshot if it was pruned. The ledger keeps every account in
+	 * a HashMap, so no block is read.
+	 * 
+	 * @param  username String containing the name of the user.
+	 * @return          true if the user sent or received bitcoin in the blockchain, false otherwise.
+	 */
+	public boolean hasAccount(String username) {
+
+		return ledger.hasAccount(username);
+	}
+
+	/**
+	 * The method containsTransaction checks whether a transaction made at a
+	 * certain time is already in the blockchain, e.g. to catch a transaction
+	 * submitted twice. Most transactions that aren't are ruled out by the
+	 * Bloom filter, which is a few bits per transaction and cheaper to probe
+	 * than the index. The others are looked up in the index by the hash of
+	 * their fingerprint, and only the blocks with that same hash are read.
+	 * 
+	 * @param  trans     Transaction object to be checked.
+	 * @param  timestamp Timestamp object containing the time the transaction was made.
+	 * @return           true if a block holds the same transaction at the same time, false otherwise.
+	 */
+	public boolean containsTransaction(Transaction trans, Timestamp timestamp) {
+
+		long key = BloomFilter.hash(fingerprint(trans, timestamp));
+
+		if (!transactionFilter.mightContain(key)) {
+
+			return false;
+		}
+
+		Integer position = transactionIndex.get(key);
+
+		// Two transactions can have the same hash, so every block with that hash is checked, starting from the last one
+		for (int i = position==null ? -1 : position; i>=0; i=sameFingerprint[i]-1) {
+
+			Block b = getBlock(i);
+			Transaction other = b.getTransaction();
+
+			if (other!=null && b.getTimeStamp().getTime()==timestamp.getTime() && other.getAmount()==trans.getAmount()
+				&& other.getSender().equals(trans.getSender()) && other.getReceiver().equals(trans.getReceiver())) {
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Method to size the Bloom filter used by containsTransaction. More
+	 * expected items or a lower false positive rate use more memory. The
+	 * filter is rebuilt from the index, so no block is read. It grows on its
+	 * own as blocks are added, and the loaders size it from the number of
+	 * blocks read when they know it.
+	 * 
+	 * @param expectedItems     int containing the number of transactions the filter is sized for.
+	 * @param falsePositiveRate double containing the wanted false positive rate, between 0 and 1.
+	 */
+	public void configureFilters(int expectedItems, double falsePositiveRate) {
+
+		transactionFilter = new BloomFilter(expectedItems, falsePositiveRate);
+		filterItems = expectedItems;
+		filterRate = falsePositiveRate;
+
+		for (long key : transactionIndex.keySet()) {
+
+			transactionFilter.add(key);
+		}
+	}
+
+	/**
+	 * Method to make sure the Bloom filter is sized for at least a certain
+	 * number of transactions, e.g. before adding the blocks of a file.
+	 * 
+	 * @param transactions int containing the number of transactions expected.
+	 */
+	void reserve(int transactions) {
+
+		if (transactions>filterItems) {
+
+			configureFilters(transactions, filterRate);
+		}
+	}
+
+	/**
+	 * The method prune drops the transactions of all the blocks except the
+	 * last depth ones, keeping only their headers (index, timestamp, nonce
+	 * and hashes). The balances every user had after the pruned blocks are
+	 * kept in a snapshot, which validateBlockChain and getBalance start from.
+	 * A digest of the snapshot and of the hash of the last pruned block is
+	 * recorded along with it, see snapshotDigest. Only a valid blockchain
+	 * kept in memory can be pruned.
+	 * 
+	 * @param depth int containing the number of most recent blocks whose transactions are kept.
+	 */
+	public void prune(int depth) {
+
+		if (depth<0) {
+
+			throw new IllegalArgumentException("Depth can't be negative!!");
+		}
+
+		if (store!=null) {
+
+			throw new IllegalStateException("Only a blockchain kept in memory can be pruned!!");
+		}
+
+		// int variable height is the number of blocks whose transactions will be dropped
+		int height = getBlockNumbers()-depth;
+
+		if (height<=prunedHeight) {
+
+			return;
+		}
+
+		if (!validateBlockChain()) {
+
+			throw new IllegalStateException("Can't prune a blockchain that isn't valid!!");
+		}
+
+		// Starting from the balances of the last snapshot and adding the transactions being pruned
+		LinkedHashMap<String, Integer> balances = new LinkedHashMap<String, Integer>(snapshot);
+
+		for (int i=prunedHeight; i<height; i++) {
+
+			Transaction trans = getBlock(i).getTransaction();
+
+			credit(balances, trans.getSender(), -trans.getAmount());
+			credit(balances, trans.getReceiver(), trans.getAmount());
+		}
+
+		// Every user besides bitcoin must have a balance that isn't negative at the pruning height
+		for (Map.Entry<String, Integer> entry : balances.entrySet()) {
+
+			if (!(entry.getKey().equals("bitcoin")) && entry.getValue()<0) {
+
+				throw new IllegalStateException("Can't prune at block " + height + ", " + entry.getKey() + " has a negative balance!!");
+			}
+		}
+
+		// Replacing the pruned blocks with their headers
+		for (int i=prunedHeight; i<height; i++) {
+
+			Block b = blocks.get(i);
+			blocks.set(i, new Block(b.getIndex(), b.getTimeStamp(), null, b.getNonce(), b.getPreviousHash(), b.getHash()));
+		}
+
+		snapshot = balances;
+		prunedHeight = height;
+		snapshotDigest = snapshotDigest(height, blocks.get(height-1).getHash(), balances);
+		ledger = newLedger(ledger.getSnapshotInterval());
+	}
+
+	/**
+	 * The method snapshotDigest hashes the pruning height, the hash of the
+	 * last pruned block and the balance of every user, sorted by name. It
+	 * ties the snapshot to the headers: the hash of the last header is in
+	 * turn covered by the hash of the first block that wasn't pruned, since
+	 * that block links to it. The digest catches a snapshot that was
+	 * corrupted or edited, but it isn't a signature: whoever edits the
+	 * balances can also compute a new digest.
+	 * 
+	 * @param  height   int containing the number of pruned blocks.
+	 * @param  lastHash String containing the hash of the last pruned block.
+	 * @param  balances Map containing the balance of every user after the pruned blocks.
+	 * @return          a String containing the digest of the snapshot.
+	 */
+	static String snapshotDigest(int height, String lastHash, Map<String, Integer> balances) {
+
+		StringBuilder content = new StringBuilder();
+		content.append(height).append('\n').append(lastHash).append('\n');
+
+		for (Map.Entry<String, Integer> entry : new TreeMap<String, Integer>(balances).entrySet()) {
+
+			content.append(entry.getKey()).append('\n').append(entry.getValue()).append('\n');
+		}
+
+		try {
+
+			return Sha1.hash(content.toString());
+		}
+
+		// UTF-8 is always supported, so this never happens
+		catch (UnsupportedEncodingException e) {
+
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Adds an amount to the balance of a user in a map of balances.
+	 */
+	private static void credit(Map<String, Integer> balances, String user, int amount) {
+
+		Integer balance = balances.get(user);
+
+		balances.put(user, (balance==null ? 0 : balance)+amount);
+	}
+
+	/**
+	 * Method to start the blockchain from a snapshot, used when reading a
+	 * pruned blockchain. It has to be called before any block is added, and
+	 * the first height blocks added afterwards have to be pruned headers.
+	 * 
+	 * @param height   int containing the number of pruned blocks.
+	 * @param balances LinkedHashMap containing the balance of every user after the pruned blocks.
+	 * @param digest   String containing the digest recorded for the snapshot, see snapshotDigest.
+	 */
+	void setSnapshot(int height, LinkedHashMap<String, Integer> balances, String digest) {
+
+		snapshot = balances;
+		prunedHeight = height;
+		snapshotDigest = digest;
+		ledger = newLedger(ledger.getSnapshotInterval());
+
+		for (String user : balances.keySet()) {
+
+			rank(user);
+		}
+	}
+
+	/**
+	 * Getter method for the number of blocks whose transactions were pruned.
+	 * 
+	 * @return an int containing the pruning height, 0 if nothing was pruned.
+	 */
+	public int getPrunedHeight() {
+
+		return prunedHeight;
+	}
+
+	/**
+	 * Getter method for the balances every user had after the pruned blocks.
+	 * 
+	 * @return a Map containing the balance of every user at the pruning height.
+	 */
+	public Map<String, Integer> getSnapshot() {
+
+		return Collections.unmodifiableMap(snapshot);
+	}
+
+	/**
+	 * Creates a ledger starting from the snapshot and records the
+	 * transactions of every block after the pruning height.
+	 */
+	private VersionedLedger newLedger(int interval) {
+
+		VersionedLedger created = new VersionedLedger(interval, snapshot, prunedHeight);
+
+		for (int i=prunedHeight; i<getBlockNumbers(); i++) {
+
+			created.append(getBlock(i).getTransaction());
+		}
+
+		return created;
+	}
+
 	/**
 	 * Getter method for a block object at a certain index in 
 	 * the BlockChain.
@@ -47,6 +476,11 @@ public class BlockChain {
 	 */
 	public Block getBlock(int index){
 
+		if (store!=null) {
+
+			return store.getBlock(index);
+		}
+
 		return blocks.get(index);
 	}
 
@@ -61,79 +495,509 @@ public class BlockChain {
 	 */
 	public String getGivenHash(int index) {
 
-		return givenHashes.get(index);
-	}
+		if (store!=null) {
+
+			return store.getGivenHash(index);
+		}
+
+		return givenHashes.get(index);
+	}
+
+	/**
+	 * Getter method for the number of blocks in the BlockChain.
+	 * 
+	 * @return an int containing the number of blocks stored
+	 * in the ArrayList blocks.
+	 */
+	public int getBlockNumbers() {
+
+		if (store!=null) {
+
+			return store.size();
+		}
+
+		return blocks.size();
+	}
+
+	/**
+	 * Getter method for the BlockStore keeping the blocks on disk.
+	 * Its hit and miss counters tell how well the cache is doing.
+	 * 
+	 * @return the BlockStore of the blockchain, or null if the blocks
+	 * are kept in memory.
+	 */
+	public BlockStore getStore() {
+
+		return store;
+	}
+
+	/**
+	 * Getter method for the difficulty of the blockchain, i.e. the number
+	 * of zeros the hash of every block begins with. New blocks have to be
+	 * mined at this difficulty, see MiningJob.
+	 * 
+	 * @return an int containing the difficulty, Block.DEFAULT_DIFFICULTY unless the file read said otherwise.
+	 */
+	public int getDifficulty() {
+
+		return difficulty;
+	}
+
+	/**
+	 * Method to set the difficulty of the blockchain while reading it. It
+	 * has to be called before any block is added, since the blocks are mined
+	 * again if their hash doesn't begin with that many zeros.
+	 * 
+	 * @param difficulty int containing the number of zeros, between 0 and 40.
+	 */
+	void setDifficulty(int difficulty) {
+
+		if (getBlockNumbers()>0) {
+
+			throw new IllegalStateException("The difficulty has to be set before any block is added!!");
+		}
+
+		Block.target(difficulty);
+		this.difficulty = difficulty;
+	}
+
+	/**
+	 * The method fromFile reads the content of a textfile, creates blocks
+	 * from the information provided, then adds them to a blockchain and 
+	 * returns it. A file that can't be read completely is never returned as
+	 * a shorter blockchain, since it would look valid.
+	 * 
+	 * @param  filename a String containing the name of the file to be read.
+	 * @return          blockchain object containing all the information from the file opened.
+	 * @throws UncheckedIOException     if the file can't be read, ends in the middle of a block or has a snapshot that doesn't match its digest.
+	 * @throws IllegalArgumentException if a block of the file is malformed, e.g. an amount that isn't a number.
+	 */
+	public static BlockChain fromFile (String filename) {
+
+		System.out.println("\nCreating BlockChain...\n");
+
+		// Variable blockchain is a BlockChain object that stores all the blocks being generated
+		BlockChain blockchain = new BlockChain();
+
+		try {
+
+			readFile(filename, blockchain);
+		}
+
+		catch (IOException e) {
+
+			throw new UncheckedIOException(e.getMessage(), e);
+		}
+
+		return blockchain;
+	}
+
+	/**
+	 * The method fromFile reads the content of a textfile into a blockchain
+	 * whose blocks are kept on disk. Only cacheCapacity blocks are kept in
+	 * memory, so the file can be larger than the memory available.
+	 * 
+	 * @param  filename      a String containing the name of the file to be read.
+	 * @param  storeFile     a String containing the name of the file the blocks are stored in.
+	 * @param  cacheCapacity an int containing the maximum number of blocks kept in memory.
+	 * @return               blockchain object containing all the information from the file opened.
+	 * @throws UncheckedIOException     if the file can't be read, ends in the middle of a block or has a snapshot that doesn't match its digest, or storeFile can't be written.
+	 * @throws IllegalArgumentException if a block of the file is malformed, e.g. an amount that isn't a number.
+	 */
+	public static BlockChain fromFile (String filename, String storeFile, int cacheCapacity) {
+
+		System.out.println("\nCreating BlockChain...\n");
+
+		try {
+
+			BlockChain blockchain = new BlockChain(storeFile, cacheCapacity);
+
+			// The blocks already stored are of no use if the file can't be read completely
+			try {
+
+				readFile(filename, blockchain);
+			}
+
+			catch (IOException | RuntimeException e) {
+
+				blockchain.getStore().close();
+				throw e;
+			}
+
+			return blockchain;
+		}
+
+		catch (IOException e) {
+
+			throw new UncheckedIOException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * The method readFile reads a textfile seven lines at a time, creates a
+	 * block from every seven lines and adds it to the blockchain given. Only
+	 * one block's lines are held in memory at a time. Any error is passed on
+	 * to the caller, which has to throw away the blocks added so far.
+	 * 
+	 * @param  filename    a String containing the name of the file to be read.
+	 * @param  blockchain  BlockChain object the blocks are added to.
+	 * @throws IOException if the file can't be read or ends in the middle of a block.
+	 */
+	private static void readFile (String filename, BlockChain blockchain) throws IOException {
+
+		// Variable info is an array that stores the seven lines of the block being read
+		String[] info = new String[7];
+
+		BufferedReader reader = new BufferedReader(new FileReader(filename));
+
+		try {
+
+			// Reading the difficulty if the file gives one, then the snapshot and the headers of the pruned blocks if it was pruned
+			readDifficulty(reader, blockchain);
+			readPruned(reader, blockchain);
+
+			// Reading the text file one block at a time until a full block can't be read
+			while (readLines(reader, info)) {
+
+				// Storing the index of the block in an int variable called index
+				int index = Integer.parseInt(info[0]);
+
+				// The hash found in the text file is added along with the block. To be used for validation later on.
+				String givenHash = info[6];
+				
+				// If the program is adding the first block to the blockchain, the previousHash of that block has to be set to 00000
+				if (index==0) {
+
+					// Creating the block and adding it to the blockchain
+					blockchain.add(new Block(index, new Timestamp(Long.parseLong(info[1])), 
+					new Transaction(info[2],info[3],Integer.parseInt(info[4])),info[5],"00000", blockchain.difficulty), givenHash);
+				}
+				
+				else {
+					// Creating the block and adding it to the blockchain
+					blockchain.add(new Block(index, new Timestamp(Long.parseLong(info[1])), 
+					new Transaction(info[2],info[3],Integer.parseInt(info[4])),info[5], blockchain.getBlock(blockchain.getBlockNumbers()-1).getHash(), blockchain.difficulty), givenHash);
+				}
+			}
+		}
+
+		finally {
+
+			reader.close();
+		}
+	}
+
+	/**
+	 * The method fromFileParallel reads a textfile the same way fromFile does,
+	 * using several threads. The file is split into chunks of whole blocks and
+	 * every chunk is parsed and hashed by a thread of its own. The first block
+	 * of a chunk links to the hash given in the file for the block before it,
+	 * so chunks don't have to wait for each other. Once all the chunks are done,
+	 * the links between them are checked in order. Like fromFile, a file that
+	 * can't be read completely is never returned as a shorter blockchain.
+	 * 
+	 * @param  filename a String containing the name of the file to be read.
+	 * @param  threads  an int containing the number of threads to use.
+	 * @return          blockchain object containing all the information from the file opened.
+	 * @throws UncheckedIOException     if the file can't be read, ends in the middle of a block or has a snapshot that doesn't match its digest.
+	 * @throws IllegalArgumentException if a block of the file is malformed, e.g. an amount that isn't a number.
+	 */
+	public static BlockChain fromFileParallel (String filename, int threads) {
+
+		System.out.println("\nCreating BlockChain...\n");
+
+		// Variable blockchain is a BlockChain object that stores all the blocks being generated
+		BlockChain blockchain = new BlockChain();
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+		try {
+
+			// ArrayList chunks stores the work handed to the threads and hashes the hashes given in the file, both in the order of the file
+			ArrayList<Future<ArrayList<Block>>> chunks = new ArrayList<Future<ArrayList<Block>>>();
+			ArrayList<String> hashes = new ArrayList<String>();
+
+			BufferedReader reader = new BufferedReader(new FileReader(filename));
+			String[] info = new String[7];
+			ArrayList<String[]> chunk = new ArrayList<String[]>();
+			String previousHash = "00000";
+			boolean more = true;
+
+			// Reading the difficulty, and the snapshot and headers if the blockchain was pruned. The first chunk links to the last header.
+			readDifficulty(reader, blockchain);
+			final int difficulty = blockchain.difficulty;
+
+			if (readPruned(reader, blockchain)) {
+
+				previousHash = blockchain.getBlock(blockchain.getBlockNumbers()-1).getHash();
+			}
+
+			String firstPreviousHash = previousHash;
+
+			// Reading the text file one block at a time and handing every full chunk to a thread
+			while (more) {
+
+				more = readLines(reader, info);
+
+				if (more) {
+
+					chunk.add(info.clone());
+					hashes.add(info[6]);
+				}
+
+				if (chunk.size()==PARALLEL_CHUNK_SIZE || (!more && chunk.size()>0)) {
+
+					final ArrayList<String[]> records = chunk;
+					final String chunkPreviousHash = previousHash;
+
+					chunks.add(pool.submit(new Callable<ArrayList<Block>>() {
+						public ArrayList<Block> call() {
+
+							return parseChunk(records, chunkPreviousHash, difficulty);
+						}
+					}));
+
+					// The next chunk links to the hash given for the last block of this one
+					previousHash = chunk.get(chunk.size()-1)[6];
+					chunk = new ArrayList<String[]>();
+				}
+			}
+
+			reader.close();
+
+			ArrayList<Block> blocks = new ArrayList<Block>(hashes.size());
+
+			for (Future<ArrayList<Block>> future : chunks) {
+
+				blocks.addAll(future.get());
+			}
+
+			// Checking the links between the chunks
+			relink(blocks, firstPreviousHash, difficulty);
+			blockchain.reserve(blocks.size());
+
+			for (int i=0; i<blocks.size(); i++) {
+
+				blockchain.add(blocks.get(i), hashes.get(i));
+			}
+		}
+
+		catch (IOException e) {
+
+			throw new UncheckedIOException(e.getMessage(), e);
+		}
+
+		catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+			throw new UncheckedIOException(new InterruptedIOException("Interrupted while reading " + filename));
+		}
+
+		// A chunk that couldn't be parsed fails the whole file, with the error of the chunk
+		catch (ExecutionException e) {
+
+			if (e.getCause() instanceof RuntimeException) {
+
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		}
+
+		finally {
+
+			pool.shutdown();
+		}
+
+		return blockchain;
+	}
+
+	/**
+	 * The method parseChunk creates the blocks of one chunk of a textfile.
+	 * Every block links to the hash of the block before it in the chunk, the
+	 * first one to the previous hash given.
+	 * 
+	 * @param  records      ArrayList containing the seven lines of every block of the chunk.
+	 * @param  previousHash a String containing the hash the first block links to.
+	 * @param  difficulty   an int containing the difficulty of the blockchain.
+	 * @return              ArrayList containing the blocks of the chunk.
+	 */
+	private static ArrayList<Block> parseChunk (ArrayList<String[]> records, String previousHash, int difficulty) {
+
+		ArrayList<Block> blocks = new ArrayList<Block>(records.size());
+
+		for (String[] info : records) {
+
+			// Storing the index of the block in an int variable called index
+			int index = Integer.parseInt(info[0]);
+
+			// If this is the first block of the blockchain, the previousHash of that block has to be set to 00000
+			if (index==0) {
+
+				previousHash = "00000";
+			}
+
+			Block block = new Block(index, new Timestamp(Long.parseLong(info[1])), 
+			new Transaction(info[2],info[3],Integer.parseInt(info[4])),info[5], previousHash, difficulty);
+
+			blocks.add(block);
+			previousHash = block.getHash();
+		}
+
+		return blocks;
+	}
+
+	/**
+	 * The method readDifficulty reads the line #difficulty followed by the
+	 * difficulty, which toFile writes at the start of a textfile when the
+	 * blockchain wasn't mined at the default difficulty. The blocks read
+	 * after it are built at that difficulty, so a test chain written by
+	 * ChainGenerator is read back as it is instead of being mined again.
+	 * If the file doesn't start with #difficulty, nothing is read.
+	 * 
+	 * @param  reader      BufferedReader the file is read from.
+	 * @param  blockchain  BlockChain object whose difficulty is set.
+	 * @throws IOException if the file can't be read.
+	 */
+	static void readDifficulty (BufferedReader reader, BlockChain blockchain) throws IOException {
+
+		reader.mark(64);
+
+		if (!("#difficulty".equals(reader.readLine()))) {
+
+			reader.reset();
+			return;
+		}
+
+		blockchain.setDifficulty(Integer.parseInt(reader.readLine()));
+	}
+
+	/**
+	 * The writeDifficulty method writes the difficulty of a blockchain to
+	 * the start of a text file, in the format read by readDifficulty. Nothing
+	 * is written for the default difficulty, so those files don't change.
+	 * 
+	 * @param  writer      BufferedWriter writing to the text file.
+	 * @param  difficulty  int containing the difficulty of the blockchain.
+	 * @throws IOException if the text file can't be written.
+	 */
+	static void writeDifficulty (BufferedWriter writer, int difficulty) throws IOException {
+
+		if (difficulty==Block.DEFAULT_DIFFICULTY) {
+
+			return;
+		}
+
+		writer.write("#difficulty");
+		writer.newLine();
+		writer.write(Integer.toString(difficulty));
+		writer.newLine();
+	}
+
+	/**
+	 * The method readPruned reads the start of a textfile written by toFile
+	 * for a pruned blockchain: the line #pruned, the pruning height, the
+	 * digest of the snapshot, the number of users, the name and balance of
+	 * every user, then the index, timestamp, nonce and hash of every pruned
+	 * block. The previous hash of a header is the hash of the header before
+	 * it. The snapshot is only added if it matches its digest, otherwise the
+	 * whole file is refused: fromFile and fromFileParallel throw instead of
+	 * returning a blockchain. If the file doesn't start with #pruned, nothing
+	 * is read.
+	 * 
+	 * @param  reader      BufferedReader the file is read from.
+	 * @param  blockchain  BlockChain object the snapshot and headers are added to.
+	 * @return             true if the blockchain was pruned, false otherwise.
+	 * @throws IOException if the file can't be read or the snapshot doesn't match its digest.
+	 */
+	static boolean readPruned (BufferedReader reader, BlockChain blockchain) throws IOException {
+
+		reader.mark(64);
+
+		if (!("#pruned".equals(reader.readLine()))) {
+
+			reader.reset();
+			return false;
+		}
+
+		int height = Integer.parseInt(reader.readLine());
+		String digest = reader.readLine();
+		int users = Integer.parseInt(reader.readLine());
+		LinkedHashMap<String, Integer> balances = new LinkedHashMap<String, Integer>();
+
+		for (int i=0; i<users; i++) {
+
+			String user = reader.readLine();
+			balances.put(user, Integer.parseInt(reader.readLine()));
+		}
+
+		ArrayList<Block> headers = new ArrayList<Block>(height);
+		String[] header = new String[4];
+		String previousHash = "00000";
+
+		for (int i=0; i<height; i++) {
+
+			if (!readLines(reader, header)) {
+
+				throw new EOFException("The file ends before all the pruned blocks were read");
+			}
+
+			headers.add(new Block(Integer.parseInt(header[0]), new Timestamp(Long.parseLong(header[1])), null, header[2], previousHash, header[3]));
+			previousHash = header[3];
+		}
+
+		if (height<=0) {
+
+			throw new StreamCorruptedException("A pruned blockchain has to have at least one pruned block");
+		}
+
+		// Nothing is added to the blockchain unless the snapshot is the one that was recorded for these headers
+		if (!(snapshotDigest(height, previousHash, balances).equals(digest))) {
+
+			throw new StreamCorruptedException("The balances of the pruned blocks don't match their digest, the file was corrupted or edited");
+		}
 
-	/**
-	 * Getter method for the number of blocks in the BlockChain.
-	 * 
-	 * @return an int containing the number of blocks stored
-	 * in the ArrayList blocks.
-	 */
-	public int getBlockNumbers() {
+		blockchain.setSnapshot(height, balances, digest);
 
-		return blocks.size();
+		for (Block b : headers) {
+
+			blockchain.add(b, b.getHash());
+		}
+
+		return true;
 	}
 
 	/**
-	 * The method fromFile reads the content of a textfile, creates blocks
-	 * from the information provided, then adds them to a blockchain and 
-	 * returns it.
+	 * Reads the next lines of a file into an array, one line per element.
+	 * Blank lines at the end of the file are ignored.
 	 * 
-	 * @param  filename a String containing the name of the file to be read.
-	 * @return          blockchain object containing all the information from the file opened.
+	 * @param  reader      BufferedReader the lines are read from.
+	 * @param  lines       String array filled with the lines read.
+	 * @return             true if all the lines were read, false if the file ended before the first one.
+	 * @throws IOException if the file can't be read, or ends after some of the lines.
 	 */
-	public static BlockChain fromFile (String filename) {
-
-		System.out.println("\nCreating BlockChain...\n");
-
-		// Variable info is an ArrayList that stores all the info extracted from the textfile
-		ArrayList<String> info = new ArrayList<String>(); 
-
-		// Variable blockchain is a BlockChain object that stores all the blocks being generated
-		BlockChain blockchain = new BlockChain();
+	static boolean readLines (BufferedReader reader, String[] lines) throws IOException {
 
-		try {
+		boolean blank = true;
 
-			// Adding all the information from the text file to the ArrayList info
-			Scanner scanner = new Scanner(new File(filename));
-			
-			while (scanner.hasNext()) {	
+		for (int i=0; i<lines.length; i++) {
 
-			info.add(scanner.nextLine());
-			}	
-		}
+			lines[i] = reader.readLine();
 
-		catch (Exception e) {
-			
-			// do nothing since this will never throw an exception. It is checked beforehand in the main method
-			System.out.println("Whoops! Looks like there's something wrong with the text file!");
-		}
-		
-		for (int i=0;i<=info.size()-7;i+=7) {
+			if (lines[i]==null) {
 
-			// Storing the index of the block in an int variable called index
-			int index = Integer.parseInt(info.get(i));
+				if (blank) {
 
-			// Adding the hashes found in the text file to the ArrayList givenHashes. To be used for validation later on.
-			blockchain.givenHashes.add(info.get(i+6));
-			
-			// If the program is adding the first block to the blockchain, the previousHash of that block has to be set to 00000
-			if (index==0) {
+					return false;
+				}
 
-				// Creating the block and adding it to the blockchain
-				blockchain.add(new Block(index, new Timestamp(Long.parseLong(info.get(i+1))), 
-				new Transaction(info.get(i+2),info.get(i+3),Integer.parseInt(info.get(i+4))),info.get(i+5),"00000"));
-			}
-			
-			else {
-				// Creating the block and adding it to the blockchain
-				blockchain.add(new Block(index, new Timestamp(Long.parseLong(info.get(i+1))), 
-				new Transaction(info.get(i+2),info.get(i+3),Integer.parseInt(info.get(i+4))),info.get(i+5), blockchain.getBlock(blockchain.getBlockNumbers()-1).getHash()));
+				throw new EOFException("The file ends in the middle of a block");
 			}
+
+			blank = blank && lines[i].trim().isEmpty();
 		}
 
-		return blockchain;
+		return true;
 	}
 
 	/**
@@ -166,33 +1030,43 @@ public class BlockChain {
 
 			BufferedWriter writer = new BufferedWriter(new FileWriter(filename));
 
+			// Writing the difficulty first if it isn't the default one, in the format read by readDifficulty
+			writeDifficulty(writer, difficulty);
+
+			// If the blockchain was pruned, writing the snapshot first in the format read by readPruned
+			if (prunedHeight>0) {
+
+				writer.write("#pruned");
+				writer.newLine();
+				writer.write(Integer.toString(prunedHeight));
+				writer.newLine();
+				writer.write(snapshotDigest);
+				writer.newLine();
+				writer.write(Integer.toString(snapshot.size()));
+				writer.newLine();
+
+				for (Map.Entry<String, Integer> entry : snapshot.entrySet()) {
+
+					writer.write(entry.getKey());
+					writer.newLine();
+					writer.write(Integer.toString(entry.getValue()));
+					writer.newLine();
+				}
+			}
+
 			//For loop used to access every block stored in the blockchain
-			for (int i=0; i<blocks.size(); i++) {
+			for (int i=0; i<getBlockNumbers(); i++) {
 			
-			// Storing the block in a Block object
-			Block b = blocks.get(i);
+			// Writing the block to the text file, only its header if it was pruned
+			if (i<prunedHeight) {
+
+				writeHeader(writer, getBlock(i));
+			}
 
-			//Writing the index of the block to the text file
-			writer.write(Integer.toString(b.getIndex()));
-			writer.newLine();
-			//Writing the timestamp of the block to the text file
-			writer.write(Long.toString(b.getTimeStamp().getTime()));
-			writer.newLine();
-			//Writing the sender of the transaction stored in the block to the text file
-			writer.write(b.getTransaction().getSender());
-			writer.newLine();
-			//Writing the receiver of the transaction stored in the block to the text file
-			writer.write(b.getTransaction().getReceiver());
-			writer.newLine();
-			//Writing the amount of bitcoin sent from the transaction stored in the block to the text file
-			writer.write(Integer.toString(b.getTransaction().getAmount()));
-			writer.newLine();
-			//Writing the nonce of the block to the text file
-			writer.write(b.getNonce());
-			writer.newLine();
-			//Writing the hash of the block to the text file
-			writer.write(b.getHash());
-			writer.newLine();
+			else {
+
+				writeBlock(writer, getBlock(i));
+			}
 			}
 
 			// Closing the writer
@@ -208,12 +1082,152 @@ public class BlockChain {
 		System.out.println("\n" + filename + " created!");
 	}
 
+	/**
+	 * The writeBlock method writes the seven lines of one block to a text
+	 * file, in the format read by fromFile.
+	 * 
+	 * @param  writer      BufferedWriter writing to the text file.
+	 * @param  b           Block object to be written.
+	 * @throws IOException if the text file can't be written.
+	 */
+	static void writeBlock (BufferedWriter writer, Block b) throws IOException {
+
+		//Writing the index of the block to the text file
+		writer.write(Integer.toString(b.getIndex()));
+		writer.newLine();
+		//Writing the timestamp of the block to the text file
+		writer.write(Long.toString(b.getTimeStamp().getTime()));
+		writer.newLine();
+		//Writing the sender of the transaction stored in the block to the text file
+		writer.write(b.getTransaction().getSender());
+		writer.newLine();
+		//Writing the receiver of the transaction stored in the block to the text file
+		writer.write(b.getTransaction().getReceiver());
+		writer.newLine();
+		//Writing the amount of bitcoin sent from the transaction stored in the block to the text file
+		writer.write(Integer.toString(b.getTransaction().getAmount()));
+		writer.newLine();
+		//Writing the nonce of the block to the text file
+		writer.write(b.getNonce());
+		writer.newLine();
+		//Writing the hash of the block to the text file
+		writer.write(b.getHash());
+		writer.newLine();
+	}
+
+	/**
+	 * The writeHeader method writes the four lines of the header of a
+	 * pruned block to a text file, in the format read by readPruned.
+	 * 
+	 * @param  writer      BufferedWriter writing to the text file.
+	 * @param  b           Block object whose header is written.
+	 * @throws IOException if the text file can't be written.
+	 */
+	static void writeHeader (BufferedWriter writer, Block b) throws IOException {
+
+		writer.write(Integer.toString(b.getIndex()));
+		writer.newLine();
+		writer.write(Long.toString(b.getTimeStamp().getTime()));
+		writer.newLine();
+		writer.write(b.getNonce());
+		writer.newLine();
+		writer.write(b.getHash());
+		writer.newLine();
+	}
+
+	/**
+	 * The toArchive method writes the blockchain to a compressed archive
+	 * using the class ChainArchive. Archives are much smaller than the
+	 * text files written by toFile and are meant for cold storage.
+	 * 
+	 * @param filename a String containing the name of the archive to be written.
+	 */
+	public void toArchive (String filename) {
+
+		try {
+
+			ChainArchive.write(this, filename, ChainArchive.DEFAULT_CHUNK_SIZE, false);
+		}
+
+		// Catching any exception that might occur 
+		catch (Exception e) {
+
+			System.out.println("Whoops! Something went wrong while i was trying to write to the archive!");
+		}
+
+		System.out.println("\n" + filename + " created!");
+	}
+
+	/**
+	 * The method fromArchive reads an archive written by toArchive and
+	 * returns the blockchain it contains.
+	 * 
+	 * @param  filename a String containing the name of the archive to be read.
+	 * @return          blockchain object containing all the blocks of the archive.
+	 * @throws UncheckedIOException if the archive can't be read or is corrupted, instead of returning part of the blockchain.
+	 */
+	public static BlockChain fromArchive (String filename) {
+
+		System.out.println("\nCreating BlockChain...\n");
+
+		try {
+
+			return ChainArchive.read(filename);
+		}
+
+		catch (IOException e) {
+
+			throw new UncheckedIOException("Whoops! Looks like there's something wrong with " + filename + "!", e);
+		}
+	}
+
+	/**
+	 * The method relink goes through a list of blocks that were built in
+	 * separate pieces and makes sure every block links to the hash of the
+	 * block before it, the same way fromFile links them. A block that doesn't
+	 * is built again with the right previous hash.
+	 * 
+	 * @param blocks       ArrayList containing the blocks to be checked.
+	 * @param previousHash String containing the hash the first block in the list links to.
+	 * @param difficulty   int containing the difficulty of the blockchain the blocks belong to.
+	 */
+	static void relink(ArrayList<Block> blocks, String previousHash, int difficulty) {
+
+		for (int i=0; i<blocks.size(); i++) {
+
+			Block b = blocks.get(i);
+
+			// The first block of the blockchain links to 00000, every other block to the hash of the block before it
+			if (b.getIndex()==0) {
+
+				previousHash = "00000";
+			}
+
+			else if (i>0) {
+
+				previousHash = blocks.get(i-1).getHash();
+			}
+
+			if (!(b.getPreviousHash().equals(previousHash))) {
+
+				blocks.set(i, new Block(b.getIndex(), b.getTimeStamp(), b.getTransaction(), b.getNonce(), previousHash, difficulty));
+			}
+		}
+	}
+
 	/**
 	 * The method validateBlockChain accesses all the blocks stored
 	 * in the blockchain and checks their index, hash, and previous hash.
 	 * This method also accesses all the transactions and checks whether
 	 * every transaction is valid, i.e. the sender has enough money to
-	 * proceed with the transaction.
+	 * proceed with the transaction. For a pruned blockchain, the balances
+	 * are validated starting from the snapshot. The transactions the pruned
+	 * blocks were hashed from are gone, so their hashes can't be checked,
+	 * only their indexes. The hash of the last pruned block is still checked
+	 * through the first block after it, whose hash covers it, and the snapshot
+	 * is checked against the digest recorded when the blockchain was pruned
+	 * (see snapshotDigest). The digest catches a snapshot that was corrupted
+	 * or edited, not one whose digest was computed again to match.
 	 * 
 	 * 
 	 * @return true if the blockchain is valid, false otherwise
@@ -266,25 +1280,53 @@ public class BlockChain {
 		// ArrayList users contains a list of all the users in the blockchain
 		ArrayList<String> users = new ArrayList<String>();
 
+		// HashSet seen contains the same users as the ArrayList users, to check whether a user was added without searching the list
+		HashSet<String> seen = new HashSet<String>();
+
 		// For loop used to populate the ArrayList users with all the users in the blockchain
 		for (int i=0; i<getBlockNumbers(); i++) {
 			
 			// Storing every transaction of every block in a Transaction object
 			Transaction trans = getBlock(i).getTransaction();
 
+			// Pruned blocks have no transaction, their users are in the snapshot
+			if (trans==null) {
+
+				continue;
+			}
+
 			// If the ArrayList users doesn't contain the sender, add it to the ArrayList users
-			if (!(users.contains(trans.getSender()))) {
+			if (seen.add(trans.getSender())) {
 				
 				users.add(trans.getSender());
 			}
 
 			// If the ArrayList users doesn't contain the receiver, add it to the ArrayList users
-			if (!(users.contains(trans.getReceiver()))) {
+			if (seen.add(trans.getReceiver())) {
 				
 				users.add(trans.getReceiver());
 			}
 		}
 
+		// If the blockchain was pruned, its balances are validated from the snapshot onward, so the snapshot has to be the one recorded for the headers
+		if (prunedHeight>0 && !(snapshotDigest(prunedHeight, getBlock(prunedHeight-1).getHash(), snapshot).equals(snapshotDigest))) {
+
+			result = false;
+		}
+
+		for (Map.Entry<String, Integer> entry : snapshot.entrySet()) {
+
+			if (seen.add(entry.getKey())) {
+
+				users.add(entry.getKey());
+			}
+
+			if (!(entry.getKey().equals("bitcoin")) && entry.getValue()<0) {
+
+				result = false;
+			}
+		}
+
 		// For loop used to validate all the transactions stored in the blocks of the blockchain
 		for (int i=0; i<users.size(); i++) {
 			
@@ -305,39 +1347,258 @@ public class BlockChain {
 	}
 
 	/**
-	 * The method getBalance calculates the balance of a specific user in the 
-	 * blockchain. The method cycles through all the blocks stored in the 
-	 * blockchain and accumulates all the bitcoins assigned to the user minus
-	 * the ones that have been spent by the user.
+	 * The method getBalance returns the balance of a specific user in the 
+	 * blockchain, i.e. all the bitcoins assigned to the user minus the ones
+	 * that have been spent by the user. The balance is kept up to date by the
+	 * ledger every time a block is added, so no block has to be read.
 	 * 
 	 * @param  username String cointaining the name of the user whose balance is to be checked
 	 * @return          int value of the balance of the user
 	 */
 	public int getBalance(String username) {
 
-		// int variable balance used to calculate the balance of the user
-		int balance=0;
+		return ledger.getBalance(username);
+	}
 
-		// For loop used to cycle through all the blocks stored in the blockchain
-		for (int i=0; i<getBlockNumbers(); i++) {
-			
-			// Storing the transaction object of every block in the blockchain in a transation object trans
-			Transaction trans = getBlock(i).getTransaction();
-			
-			// If the user is sending bitcoins, subtract the amount
-			if (trans.getSender().equals(username)) {
-				
-				balance-=trans.getAmount();
+	/**
+	 * The method getBalance calculates the balance a specific user had right
+	 * after a certain block was added, using the snapshots of the ledger.
+	 * 
+	 * @param  username String cointaining the name of the user whose balance is to be checked
+	 * @param  height   int containing the index of the block
+	 * @return          int value of the balance of the user after that block
+	 */
+	public int getBalance(String username, int height) {
+
+		return ledger.getBalance(username, height);
+	}
+
+	/**
+	 * Getter method for the names of all the users that appear in the
+	 * blockchain, in the order they first appeared.
+	 * 
+	 * @return a List containing the name of every user.
+	 */
+	public List<String> getAccounts() {
+
+		return ledger.getAccounts();
+	}
+
+	/**
+	 * Setter method for the number of blocks between two snapshots of the
+	 * ledger answering getBalance(username, height). A shorter interval
+	 * answers faster and uses more memory. The ledger is rebuilt from the
+	 * blocks already in the blockchain.
+	 * 
+	 * @param interval int containing the number of blocks between two snapshots.
+	 */
+	public void setSnapshotInterval(int interval) {
+
+		ledger = newLedger(interval);
+	}
+
+	/**
+	 * The method runBatch adds transactions to a blockchain without asking
+	 * the user anything, e.g. to replay a day of transactions from a log. It
+	 * is started with:
+	 * 
+	 * java BlockChain -batch chainFile [transactionFile | -] [-out file] [-checkpoint n]
+	 * 
+	 * The blockchain is read from chainFile and validated. The transactions
+	 * are then read one per line, as sender,receiver,amount or as
+	 * sender,receiver,amount,timestamp, from transactionFile or from standard
+	 * input if it is - or missing. Every transaction whose sender has enough
+	 * bitcoin is mined and added; bitcoin itself can always send, as in
+	 * validateBlockChain. A transaction with a timestamp that is already in
+	 * the blockchain is skipped. The blockchain is written to the output file
+	 * every n transactions added and at the end, then a summary is printed.
+	 * Blocks are always mined at the default difficulty, since the file
+	 * written is read back with it.
+	 * 
+	 * @param args String array containing the arguments given to main.
+	 */
+	static void runBatch(String[] args) {
+
+		String chainFile = null;
+		String transactionFile = "-";
+		String outFile = null;
+		int checkpoint = 0;
+
+		// Reading the arguments, the first one being -batch
+		for (int i=1; i<args.length; i++) {
+
+			if (args[i].equals("-out") && i+1<args.length) {
+
+				outFile = args[++i];
 			}
 
-			// If the user is receiving money, add the amount
-			if (trans.getReceiver().equals(username)) {
-				
-				balance+=trans.getAmount();
+			else if (args[i].equals("-checkpoint") && i+1<args.length) {
+
+				checkpoint = Integer.parseInt(args[++i]);
+			}
+
+			// Any other option is unknown, - alone being standard input
+			else if (args[i].startsWith("-") && args[i].length()>1) {
+
+				chainFile = null;
+				break;
+			}
+
+			else if (chainFile==null) {
+
+				chainFile = args[i];
+			}
+
+			else {
+
+				transactionFile = args[i];
+			}
+		}
+
+		if (chainFile==null) {
+
+			System.out.println("Usage: java BlockChain -batch chainFile [transactionFile | -] [-out file] [-checkpoint n]");
+			return;
+		}
+
+		if (outFile==null) {
+
+			outFile = chainFile.substring(0, chainFile.length()-4) + "_sgham022.txt";
+		}
+
+		if (!(new File(chainFile).exists())) {
+
+			System.out.println("Oops! Looks like " + chainFile + " doesn't exist.");
+			return;
+		}
+
+		BlockChain blockChain;
+
+		// A chain file that can't be read completely is refused, or the blocks missing from it would be lost when it's written back
+		try {
+
+			blockChain = fromFileParallel(chainFile, Runtime.getRuntime().availableProcessors());
+		}
+
+		catch (IllegalArgumentException | UncheckedIOException e) {
+
+			System.out.println("Whoops! Looks like " + chainFile + " can't be read completely: " + e.getMessage());
+			System.out.println("No transactions will be added and nothing will be written.");
+			return;
+		}
+
+		if (!blockChain.validateBlockChain()) {
+
+			System.out.println("BlockChain is not valid! No transactions will be added.");
+			return;
+		}
+
+		if (blockChain.getBlockNumbers()==0) {
+
+			System.out.println("BlockChain is empty! No transactions will be added.");
+			return;
+		}
+
+		long start = System.currentTimeMillis();
+		long lines = 0;          // Number of lines read
+		long added = 0;         // Number of transactions added
+		long rejected = 0;     // Number of transactions rejected, either malformed or the sender not having enough bitcoin
+		long duplicates = 0;  // Number of transactions skipped since they are already in the blockchain
+
+		// Mining every block on all the processors, each one searching its own range of nonces
+		MiningPool miner = new MiningPool(Runtime.getRuntime().availableProcessors());
+
+		try {
+
+			BufferedReader reader = transactionFile.equals("-") ? new BufferedReader(new InputStreamReader(System.in)) : new BufferedReader(new FileReader(transactionFile));
+			String line;
+
+			while ((line = reader.readLine())!=null) {
+
+				lines++;
+
+				if (line.trim().isEmpty()) {
+
+					continue;
+				}
+
+				String[] fields = line.split(",");
+				Transaction trans;
+				Timestamp timestamp;
+
+				// Parsing the transaction, a malformed line is rejected
+				try {
+
+					if (fields.length<3 || fields.length>4) {
+
+						throw new IllegalArgumentException("Expected sender,receiver,amount[,timestamp]");
+					}
+
+					// A blank name would be written to the text file as an empty line
+					if (fields[0].trim().isEmpty() || fields[1].trim().isEmpty()) {
+
+						throw new IllegalArgumentException("Sender and receiver can't be blank");
+					}
+
+					trans = new Transaction(fields[0].trim(), fields[1].trim(), Integer.parseInt(fields[2].trim()));
+					timestamp = new Timestamp(fields.length==4 ? Long.parseLong(fields[3].trim()) : System.currentTimeMillis());
+				}
+
+				catch (IllegalArgumentException e) {
+
+					System.out.println("Line " + lines + " rejected: " + e.getMessage());
+					rejected++;
+					continue;
+				}
+
+				// A transaction replayed with the time it was made at is skipped if it's already in the blockchain
+				if (fields.length==4 && blockChain.containsTransaction(trans, timestamp)) {
+
+					duplicates++;
+					continue;
+				}
+
+				// If the sender doesn't have enough balance, the transaction is rejected
+				if (!(trans.getSender().equals("bitcoin")) && blockChain.getBalance(trans.getSender())<trans.getAmount()) {
+
+					System.out.println("Line " + lines + " rejected: " + trans.getSender() + " has " + blockChain.getBalance(trans.getSender()) + " bitcoin, " + trans.getAmount() + " needed");
+					rejected++;
+					continue;
+				}
+
+				blockChain.add(miner.mine(blockChain.getBlockNumbers(), timestamp, trans, blockChain.getBlock(blockChain.getBlockNumbers()-1).getHash(), blockChain.getDifficulty()));
+				added++;
+
+				// Writing the blockchain every checkpoint transactions so a crash doesn't lose the whole run
+				if (checkpoint>0 && added%checkpoint==0) {
+
+					blockChain.toFile(outFile);
+				}
 			}
+
+			reader.close();
+		}
+
+		catch (IOException e) {
+
+			System.out.println("Whoops! Looks like there's something wrong with " + transactionFile + "!");
+		}
+
+		finally {
+
+			miner.shutdown();
 		}
 
-		return balance;
+		blockChain.toFile(outFile);
+
+		long elapsed = Math.max(1, System.currentTimeMillis()-start);
+		double seconds = elapsed/1000.0;
+
+		System.out.println("\nLines read: " + lines);
+		System.out.println("Transactions added: " + added);
+		System.out.println("Transactions rejected: " + rejected);
+		System.out.println("Duplicates skipped: " + duplicates);
+		System.out.println("Time: " + elapsed + " ms (" + String.format("%.1f", added/seconds) + " transactions/s, " + String.format("%.1f", miner.getTried()/seconds) + " nonces/s)");
 	}
 
 	/**
@@ -353,11 +1614,21 @@ public class BlockChain {
 	 * add a transaction until the user inputs no. The blockchain is then exported to a 
 	 * text file with a specific file name and format.
 	 * 
+	 * If the first argument is -batch, the transactions are read from a file or
+	 * from standard input instead, see runBatch.
+	 * 
 	 */
 	public static void main(String[] args) {
 
+		if (args.length>0 && args[0].equals("-batch")) {
+
+			runBatch(args);
+			return;
+		}
+
 		System.out.println("****************** CSI2110 A2 BlockChain - Said Ghamra 300008217 ******************");	
 
+		Scanner in = new Scanner(System.in);            // Scanner in reads everything the user enters
 		boolean test = true;                            // boolean test is used to validate the filename of the text file from which the blockchain is generated
 		boolean moreTransactions = true;               // boolean moreTransactions is used to allow the users to make more transactions
 		BlockChain blockChain = new BlockChain();     // BlockChain object blockChain used to store the blockchain generated from reading the text file
@@ -371,7 +1642,7 @@ public class BlockChain {
 				System.out.println("\nPlease enter the name of the file you would like to open: ");
 
 				// Getting the name of the file from the user
-				String fileName = new Scanner(System.in).nextLine();
+				String fileName = in.nextLine();
 
 				// Used to test whether the file entered is valid or invalid. If its invalid, it'll throw an error that will be caught using the try catch
 				Scanner scanner = new Scanner(new File(fileName)); 
@@ -379,8 +1650,18 @@ public class BlockChain {
 				// If a scanner is built successfully, we set the variable test to false so it doesn't prompt the user for a new file name
 				test = false;
 
-				// Creating the blockchain from the information specified in the text file
-				blockChain = BlockChain.fromFile(fileName);
+				// Creating the blockchain from the information specified in the text file. A file that can't be read completely is refused.
+				try {
+
+					blockChain = BlockChain.fromFile(fileName);
+				}
+
+				catch (IllegalArgumentException | UncheckedIOException e) {
+
+					System.out.println("\nWhoops! Looks like " + fileName + " can't be read completely: " + e.getMessage());
+					System.out.println("No transactions will be added and nothing will be written.");
+					return;
+				}
 
 				// Checking whether the blockchain is valid or not
 				boolean valid = blockChain.validateBlockChain();
@@ -406,29 +1687,40 @@ public class BlockChain {
 					System.out.println("\nWould you like to add a transaction to the BlockChain? Please enter y for yes or n for no: ");
 
 					// Determining whether the user wants to add new transactions or not
-					String input = new Scanner(System.in).nextLine();
+					String input = in.nextLine();
 					
 					// If the user wants to add more transactions
 					if (input.equals("y")) {
 					
 						// Getting the senders name
 						System.out.println("\nPlease enter the senders name: ");
-						String sender = new Scanner(System.in).nextLine();
+						String sender = in.nextLine();
 
 						// Getting the receivers name
 						System.out.println("\nPlease enter the receivers name: ");
-						String receiver = new Scanner(System.in).nextLine();
+						String receiver = in.nextLine();
 
 						// Getting the amount of bitcoin to be transferred
 						System.out.println("\nPlease enter the amount: ");
-						int amount = new Scanner(System.in).nextInt();
+						int amount = Integer.parseInt(in.nextLine().trim());
 
 						// If the sender has enough balance, create a new block and add it to blockchain
 						if (blockChain.getBalance(sender)>=amount) {
 							
 							System.out.println("\nThis transaction is valid! Adding the transaction to the BlockChain!");
 
-							blockChain.add(new Block(blockChain.getBlockNumbers(), new Timestamp(System.currentTimeMillis()), new Transaction(sender, receiver, amount), "", blockChain.getBlock(blockChain.getBlockNumbers()-1).getHash()));
+							// Mining the new block as a job that reports its progress while it runs
+							MiningJob job = new MiningJob(blockChain.getBlockNumbers(), new Timestamp(System.currentTimeMillis()), new Transaction(sender, receiver, amount), blockChain.getBlock(blockChain.getBlockNumbers()-1).getHash(), 0, blockChain.getDifficulty());
+							
+							job.setProgressListener(new MiningJob.ProgressListener() {
+								public void progress(MiningJob job, long tried) {
+
+									System.out.println("Mining... " + tried + " nonces tried");
+								}
+							}, 4*MiningJob.DEFAULT_PROGRESS_INTERVAL);
+
+							job.run(0);
+							blockChain.add(job.getBlock());
 
 							System.out.println("\nAdded the transaction to the BlockChain!");
 						}
@@ -0,0 +1,275 @@
+import java.io.*;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Class BlockStore keeps the blocks of a blockchain in a file on disk
+ * instead of in memory. Only the offset of every block in the file is
+ * kept in memory, along with a cache holding a limited number of blocks.
+ * When the cache is full the least recently used block is evicted. When
+ * blocks are read in increasing order, the blocks that follow are read
+ * ahead in the same disk read. Going back to blocks already read, like
+ * validateBlockChain does for the previous block, doesn't stop the scan.
+ *
+ * @author Said Ghamra
+ * @version 1.0
+ */
+public class BlockStore {
+
+	// Constants
+	public static final int DEFAULT_READ_AHEAD = 64;    // Default number of blocks read at once during a sequential scan
+
+	// Instance Variables
+	private RandomAccessFile file;                  // File the blocks are stored in
+	private long[] offsets;                        // Position of every block in the file
+	private int size;                             // Number of blocks stored
+	private long end;                            // Position at which the next block is written
+	private LinkedHashMap<Integer, Entry> cache; // Blocks currently in memory, from least to most recently used
+	private int capacity;                      // Maximum number of blocks kept in memory
+	private int readAhead;                     // Number of blocks read at once during a sequential scan
+	private int highestRead;                  // Index of the highest block read by the current scan
+	private long hits;                       // Number of reads answered by the cache
+	private long misses;                    // Number of reads that had to go to disk
+
+	/**
+	 * Class Entry holds a block and the hash that was given for it.
+	 */
+	private static class Entry {
+
+		// Instance Variables
+		private Block block;          // The block
+		private String givenHash;    // Hash given for the block
+
+		private Entry(Block block, String givenHash) {
+
+			this.block = block;
+			this.givenHash = givenHash;
+		}
+	}
+
+	/**
+	 * Constructor method for the class BlockStore. Creates an empty store
+	 * in the given file, replacing whatever the file contained.
+	 *
+	 * @param  filename    String containing the name of the file the blocks are stored in.
+	 * @param  capacity    Int containing the maximum number of blocks kept in memory.
+	 * @param  readAhead   Int containing the number of blocks read at once during a sequential scan.
+	 * @throws IOException if the file can't be created.
+	 */
+	public BlockStore(String filename, final int capacity, int readAhead) throws IOException {
+
+		if (capacity<=0 || readAhead<=0) {
+
+			throw new IllegalArgumentException("Capacity and read ahead have to be positive!!");
+		}
+
+		this.file = new RandomAccessFile(filename, "rw");
+		this.file.setLength(0);
+		this.offsets = new long[1024];
+		this.capacity = capacity;
+		this.readAhead = readAhead;
+		this.highestRead = -2;
+
+		// LinkedHashMap in access order evicts the least recently used block once there are more than capacity
+		this.cache = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+
+				return size()>capacity;
+			}
+		};
+	}
+
+	/**
+	 * Method to write a block at the end of the store.
+	 *
+	 * @param  block       Block object to be stored.
+	 * @param  givenHash   String containing the hash given for the block.
+	 * @throws IOException if the block can't be written.
+	 */
+	public void append(Block block, String givenHash) throws IOException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(160);
+		DataOutputStream out = new DataOutputStream(bytes);
+		Transaction trans = block.getTransaction();
+
+		out.writeInt(block.getIndex());
+		out.writeLong(block.getTimeStamp().getTime());
+		out.writeBoolean(trans!=null);
+
+		// Pruned blocks only have their header
+		if (trans!=null) {
+
+			out.writeUTF(trans.getSender());
+			out.writeUTF(trans.getReceiver());
+			out.writeInt(trans.getAmount());
+		}
+
+		out.writeUTF(block.getNonce());
+		out.writeUTF(block.getPreviousHash());
+		out.writeUTF(block.getHash());
+		out.writeUTF(givenHash);
+
+		if (size==offsets.length) {
+
+			offsets = Arrays.copyOf(offsets, size*2);
+		}
+
+		file.seek(end);
+		file.write(bytes.toByteArray());
+		offsets[size] = end;
+		end += bytes.size();
+
+		// The block just added is usually the next one to be read, since the next block links to it
+		cache.put(size, new Entry(block, givenHash));
+		size++;
+	}
+
+	/**
+	 * Getter method for the block at a certain index.
+	 *
+	 * @param  index int containing the index of the block.
+	 * @return       a block object corresponding to the index.
+	 */
+	public Block getBlock(int index) {
+
+		return get(index).block;
+	}
+
+	/**
+	 * Getter method for the hash given for the block at a certain index.
+	 *
+	 * @param  index int containing the index of the block.
+	 * @return       a String containing the given hash of the block.
+	 */
+	public String getGivenHash(int index) {
+
+		return get(index).givenHash;
+	}
+
+	/**
+	 * Getter method for the number of blocks in the store.
+	 *
+	 * @return an int containing the number of blocks stored.
+	 */
+	public int size() {
+
+		return size;
+	}
+
+	/**
+	 * Getter method for the number of reads answered by the cache.
+	 *
+	 * @return a long containing the number of cache hits.
+	 */
+	public long getHits() {
+
+		return hits;
+	}
+
+	/**
+	 * Getter method for the number of reads that had to go to disk.
+	 *
+	 * @return a long containing the number of cache misses.
+	 */
+	public long getMisses() {
+
+		return misses;
+	}
+
+	/**
+	 * Method to close the file the blocks are stored in.
+	 *
+	 * @throws IOException if the file can't be closed.
+	 */
+	public void close() throws IOException {
+
+		file.close();
+	}
+
+	/**
+	 * Returns the entry of a block, reading it from disk when it isn't
+	 * in the cache. If the block comes right after the highest one read by
+	 * the current scan, the blocks after it are read as well. Reading a block
+	 * far before that one starts a new scan.
+	 */
+	private Entry get(int index) {
+
+		if (index<0 || index>=size) {
+
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+		boolean sequential = index==highestRead+1;
+
+		// Blocks just behind the scan were read by it, so they don't end it
+		if (index>highestRead || index<highestRead-readAhead) {
+
+			highestRead = index;
+		}
+
+		Entry entry = cache.get(index);
+
+		if (entry!=null) {
+
+			hits++;
+			return entry;
+		}
+
+		misses++;
+
+		// Never read ahead more blocks than the cache can hold, or they would evict each other
+		int count = sequential ? Math.min(Math.min(readAhead, capacity), size-index) : 1;
+
+		try {
+
+			long start = offsets[index];
+			long stop = index+count<size ? offsets[index+count] : end;
+			byte[] bytes = new byte[(int) (stop-start)];
+
+			file.seek(start);
+			file.readFully(bytes);
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+			for (int i=0; i<count; i++) {
+
+				Entry read = readEntry(in);
+
+				// Blocks read ahead don't replace ones that are already cached
+				if (i==0) {
+
+					entry = read;
+					cache.put(index, read);
+				}
+
+				else if (!cache.containsKey(index+i)) {
+
+					cache.put(index+i, read);
+				}
+			}
+		}
+
+		catch (IOException e) {
+
+			throw new UncheckedIOException("Couldn't read block " + index + " from disk", e);
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Reads one block written by append. The block keeps the hash it was
+	 * stored with instead of being hashed again.
+	 */
+	private static Entry readEntry(DataInputStream in) throws IOException {
+
+		int index = in.readInt();
+		Timestamp timestamp = new Timestamp(in.readLong());
+		Transaction trans = in.readBoolean() ? new Transaction(in.readUTF(), in.readUTF(), in.readInt()) : null;
+		String nonce = in.readUTF();
+		String previousHash = in.readUTF();
+		String hash = in.readUTF();
+
+		return new Entry(new Block(index, timestamp, trans, nonce, previousHash, hash), in.readUTF());
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * Class BloomFilter represents a set of strings that answers whether a
+ * string might be in it using a fixed amount of memory. If it answers no,
+ * the string was never added. If it answers yes, the string was probably
+ * added, and is wrong only with the false positive rate it was built for.
+ *
+ * @author Said Ghamra
+ * @version 1.0
+ */
+public class BloomFilter {
+
+	// Instance Variables
+	private long[] bits;          // The bits of the filter
+	private int bitCount;        // Number of bits in the filter
+	private int hashCount;      // Number of bits set for every string
+
+	/**
+	 * Constructor method for the class BloomFilter. Sizes the filter so it
+	 * holds a number of strings with a certain false positive rate.
+	 *
+	 * @param  expectedItems     Int containing the number of strings expected to be added.
+	 * @param  falsePositiveRate Double containing the wanted false positive rate, between 0 and 1.
+	 */
+	public BloomFilter(int expectedItems, double falsePositiveRate) {
+
+		if (expectedItems<=0 || falsePositiveRate<=0 || falsePositiveRate>=1) {
+
+			throw new IllegalArgumentException("Expected items has to be positive and the false positive rate between 0 and 1!!");
+		}
+
+		// Optimal number of bits and of hash functions for n items and false positive rate p
+		double ln2 = Math.log(2);
+		long m = (long) Math.ceil(-expectedItems*Math.log(falsePositiveRate)/(ln2*ln2));
+
+		this.bitCount = (int) Math.min(Math.max(m, 64), Integer.MAX_VALUE-63);
+		this.hashCount = Math.max(1, (int) Math.round((double) bitCount/expectedItems*ln2));
+		this.bits = new long[(bitCount+63)/64];
+	}
+
+	/**
+	 * Method to add a string to the filter.
+	 *
+	 * @param item String to be added.
+	 */
+	public void add(String item) {
+
+		add(hash(item));
+	}
+
+	/**
+	 * Method to add a string to the filter by its hash, see hash.
+	 *
+	 * @param hash long containing the hash of the string to be added.
+	 */
+	public void add(long hash) {
+
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+
+		for (int i=0; i<hashCount; i++) {
+
+			int bit = index(h1+i*h2);
+			bits[bit >>> 6] |= 1L << bit;
+		}
+	}
+
+	/**
+	 * Method to check whether a string might have been added to the filter.
+	 *
+	 * @param  item String to be checked.
+	 * @return      false if the string was never added, true if it probably was.
+	 */
+	public boolean mightContain(String item) {
+
+		return mightContain(hash(item));
+	}
+
+	/**
+	 * Method to check whether a string might have been added to the filter
+	 * by its hash, see hash.
+	 *
+	 * @param  hash long containing the hash of the string to be checked.
+	 * @return      false if the string was never added, true if it probably was.
+	 */
+	public boolean mightContain(long hash) {
+
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+
+		for (int i=0; i<hashCount; i++) {
+
+			int bit = index(h1+i*h2);
+
+			if ((bits[bit >>> 6] & (1L << bit))==0) {
+
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Getter method for the number of bits in the filter.
+	 *
+	 * @return an int containing the number of bits.
+	 */
+	public int getBitCount() {
+
+		return bitCount;
+	}
+
+	/**
+	 * Getter method for the number of bits set for every string.
+	 *
+	 * @return an int containing the number of hash functions.
+	 */
+	public int getHashCount() {
+
+		return hashCount;
+	}
+
+	/**
+	 * Maps a combined hash to a bit of the filter.
+	 */
+	private int index(int hash) {
+
+		return (hash & Integer.MAX_VALUE)%bitCount;
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of the characters of a string, whose two halves
+	 * are combined to get the hash functions of the filter. Two different
+	 * strings rarely have the same hash, so it can also be used as the key
+	 * of an index whose entries are then checked.
+	 *
+	 * @param  item String to be hashed.
+	 * @return      a long containing the hash of the string.
+	 */
+	public static long hash(String item) {
+
+		long hash = 0xcbf29ce484222325L;
+
+		for (int i=0; i<item.length(); i++) {
+
+			hash ^= item.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+
+		// Mixing the bits so both halves depend on the whole string
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+
+		return hash;
+	}
+}
@@ -0,0 +1,597 @@
+import java.io.*;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * Class ChainArchive reads and writes a blockchain in a compressed binary
+ * format meant for cold storage. The archive is split into chunks that
+ * can each be decoded on their own, so reading is done in parallel. Inside
+ * a chunk the account names are stored once in a dictionary, the timestamps
+ * and amounts are delta encoded as variable length integers, the hashes are
+ * stored as 20 raw bytes and the previous hash of every block is left out
+ * since it can be derived. The index of a block is stored as its difference
+ * from the index following the previous block's, which takes a single byte
+ * for a valid blockchain. The header of the archive records the difficulty
+ * the blockchain was mined at, so its blocks are read back at that same
+ * difficulty. The hash stored for a block is the hash
+ * that was given for it, so an invalid blockchain is still invalid once it
+ * is read back.
+ *
+ * @author Said Ghamra
+ * @version 1.0
+ */
+public class ChainArchive {
+
+	// Constants
+	public static final int DEFAULT_CHUNK_SIZE = 4096;     // Default number of blocks stored in one chunk
+	private static final int MAGIC = 0x42434131;          // Magic number at the start of every archive ("BCA1")
+	private static final int FLAG_OMIT_HASHES = 1;       // Flag set when the hashes of the blocks are not stored
+	private static final int HASH_BYTES = 0;            // The given hash of a block is stored as 20 bytes, or left out if hashes are omitted
+	private static final int HASH_TEXT = 1;            // The given hash of a block is stored as text
+
+	/**
+	 * Class Writer appends blocks to an archive one at a time, so a
+	 * blockchain doesn't have to be in memory to be archived. A chunk
+	 * is compressed and written every time it is full.
+	 */
+	public static class Writer {
+
+		// Instance Variables
+		private DataOutputStream out;                   // Stream writing to the archive file
+		private int chunkSize;                         // Number of blocks stored in one chunk
+		private boolean omitHashes;                   // Whether the hashes of the blocks are left out
+		private ByteArrayOutputStream chunkBytes;    // Uncompressed content of the current chunk
+		private DataOutputStream chunk;             // Stream writing to chunkBytes
+		private HashMap<String, Integer> dictionary; // Account names seen in the current chunk
+		private int firstIndex;                    // Index of the first block of the current chunk
+		private int lastIndex;                    // Index of the previous block in the current chunk
+		private int count;                        // Number of blocks in the current chunk
+		private long lastTime;                   // Timestamp of the previous block in the current chunk
+		private int lastAmount;                 // Amount of the previous block in the current chunk
+
+		/**
+		 * Constructor method for the class Writer. Creates the archive
+		 * file and writes its header.
+		 *
+		 * @param  filename    String containing the name of the archive to be written.
+		 * @param  chunkSize   Int containing the number of blocks stored in one chunk.
+		 * @param  omitHashes  True if the hashes should be left out and recomputed when reading.
+		 * @throws IOException if the archive can't be written.
+		 */
+		public Writer(String filename, int chunkSize, boolean omitHashes) throws IOException {
+
+			this(filename, chunkSize, omitHashes, Block.DEFAULT_DIFFICULTY);
+		}
+
+		/**
+		 * Constructor method for an archive of a blockchain mined at another
+		 * difficulty than the default, such as a test chain written by
+		 * ChainGenerator.
+		 *
+		 * @param  filename    String containing the name of the archive to be written.
+		 * @param  chunkSize   Int containing the number of blocks stored in one chunk.
+		 * @param  omitHashes  True if the hashes should be left out and recomputed when reading.
+		 * @param  difficulty  Int containing the difficulty the blocks were mined at.
+		 * @throws IOException if the archive can't be written.
+		 */
+		public Writer(String filename, int chunkSize, boolean omitHashes, int difficulty) throws IOException {
+
+			Block.target(difficulty);
+
+			if (chunkSize<=0) {
+
+				throw new IllegalArgumentException("Chunk size has to be positive!!");
+			}
+
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+			this.chunkSize = chunkSize;
+			this.omitHashes = omitHashes;
+			this.chunkBytes = new ByteArrayOutputStream();
+			this.chunk = new DataOutputStream(chunkBytes);
+			this.dictionary = new HashMap<String, Integer>();
+
+			out.writeInt(MAGIC);
+			out.writeByte(omitHashes ? FLAG_OMIT_HASHES : 0);
+			out.writeByte(difficulty);
+		}
+
+		/**
+		 * Method to append a block to the archive. The hash of the block is
+		 * used as its given hash.
+		 *
+		 * @param  block       Block object to be appended.
+		 * @throws IOException if the archive can't be written.
+		 */
+		public void append(Block block) throws IOException {
+
+			append(block, block.getHash());
+		}
+
+		/**
+		 * Method to append a block to the archive along with the hash that
+		 * was given for it. When hashes are omitted, the given hash is only
+		 * stored if it isn't the hash of the block.
+		 *
+		 * @param  block       Block object to be appended.
+		 * @param  givenHash   String containing the hash given for the block.
+		 * @throws IOException if the archive can't be written.
+		 */
+		public void append(Block block, String givenHash) throws IOException {
+
+			if (block.isPruned()) {
+
+				throw new IllegalArgumentException("Pruned blocks can't be archived!!");
+			}
+
+			// The first block of a chunk stores the hash it links to, so the chunk can be decoded on its own
+			if (count==0) {
+
+				firstIndex = block.getIndex();
+				lastIndex = firstIndex-1;
+				lastTime = 0;
+				lastAmount = 0;
+				dictionary.clear();
+				chunk.writeUTF(block.getPreviousHash());
+			}
+
+			Transaction trans = block.getTransaction();
+			long time = block.getTimeStamp().getTime();
+
+			// Indexes are stored too, so a blockchain whose indexes are wrong is still invalid once read back
+			writeVarLong(chunk, zigZag((long) block.getIndex()-lastIndex-1));
+			writeVarLong(chunk, zigZag(time-lastTime));
+			writeAccount(trans.getSender());
+			writeAccount(trans.getReceiver());
+			writeVarLong(chunk, zigZag((long) trans.getAmount()-lastAmount));
+			writeString(chunk, block.getNonce());
+
+			// A given hash that can't be written as 20 bytes, or that doesn't match the block when hashes are omitted, is written as text
+			if (omitHashes ? givenHash.equals(block.getHash()) : isHex(givenHash)) {
+
+				chunk.writeByte(HASH_BYTES);
+
+				if (!omitHashes) {
+
+					chunk.write(toBytes(givenHash));
+				}
+			}
+
+			else {
+
+				chunk.writeByte(HASH_TEXT);
+				writeString(chunk, givenHash);
+			}
+
+			lastIndex = block.getIndex();
+			lastTime = time;
+			lastAmount = trans.getAmount();
+			count++;
+
+			if (count==chunkSize) {
+
+				flushChunk();
+			}
+		}
+
+		/**
+		 * Method to write the last chunk and close the archive.
+		 *
+		 * @throws IOException if the archive can't be written.
+		 */
+		public void close() throws IOException {
+
+			flushChunk();
+			out.close();
+		}
+
+		/**
+		 * Writes an account name as its position in the dictionary. The first
+		 * time a name appears in a chunk it is written out after its position.
+		 */
+		private void writeAccount(String name) throws IOException {
+
+			Integer id = dictionary.get(name);
+
+			if (id==null) {
+
+				writeVarLong(chunk, dictionary.size());
+				writeString(chunk, name);
+				dictionary.put(name, dictionary.size());
+			}
+
+			else {
+
+				writeVarLong(chunk, id);
+			}
+		}
+
+		/**
+		 * Compresses the current chunk and writes it to the archive
+		 * preceded by its index, block count and lengths.
+		 */
+		private void flushChunk() throws IOException {
+
+			if (count==0) {
+
+				return;
+			}
+
+			byte[] raw = chunkBytes.toByteArray();
+			Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+			deflater.setInput(raw);
+			deflater.finish();
+
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length/2+64);
+			byte[] buffer = new byte[8192];
+
+			while (!deflater.finished()) {
+
+				compressed.write(buffer, 0, deflater.deflate(buffer));
+			}
+
+			deflater.end();
+
+			out.writeInt(firstIndex);
+			out.writeInt(count);
+			out.writeInt(raw.length);
+			out.writeInt(compressed.size());
+			compressed.writeTo(out);
+
+			chunkBytes.reset();
+			count = 0;
+		}
+	}
+
+	/**
+	 * Writes every block of a blockchain to an archive.
+	 *
+	 * @param  blockchain  BlockChain object to be archived.
+	 * @param  filename    String containing the name of the archive to be written.
+	 * @param  chunkSize   Int containing the number of blocks stored in one chunk.
+	 * @param  omitHashes  True if the hashes should be left out and recomputed when reading.
+	 * @throws IOException if the archive can't be written.
+	 */
+	public static void write(BlockChain blockchain, String filename, int chunkSize, boolean omitHashes) throws IOException {
+
+		Writer writer = new Writer(filename, chunkSize, omitHashes, blockchain.getDifficulty());
+
+		for (int i=0; i<blockchain.getBlockNumbers(); i++) {
+
+			writer.append(blockchain.getBlock(i), blockchain.getGivenHash(i));
+		}
+
+		writer.close();
+	}
+
+	/**
+	 * Reads an archive and rebuilds the blockchain it contains. The chunks
+	 * are decompressed and their blocks hashed on a pool of threads, then
+	 * the links between chunks are checked in order.
+	 *
+	 * @param  filename    String containing the name of the archive to be read.
+	 * @return             blockchain object containing all the blocks of the archive.
+	 * @throws IOException if the archive can't be read or is not an archive.
+	 */
+	public static BlockChain read(String filename) throws IOException {
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
+		ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+		try {
+
+			if (in.readInt()!=MAGIC) {
+
+				throw new IOException(filename + " is not a blockchain archive!");
+			}
+
+			final boolean omitHashes = (in.readByte() & FLAG_OMIT_HASHES)!=0;
+			final int difficulty = in.readUnsignedByte();
+			Block.target(difficulty);
+			ArrayList<Future<Chunk>> chunks = new ArrayList<Future<Chunk>>();
+
+			// Reading the chunks one after the other and handing each one to the pool to be decoded
+			while (true) {
+
+				final int firstIndex;
+
+				try {
+
+					firstIndex = in.readInt();
+				}
+
+				catch (EOFException e) {
+
+					break;
+				}
+
+				final int count = in.readInt();
+				final int rawLength = in.readInt();
+				final byte[] compressed = new byte[in.readInt()];
+				in.readFully(compressed);
+
+				chunks.add(pool.submit(new Callable<Chunk>() {
+					public Chunk call() throws Exception {
+
+						return decode(compressed, rawLength, firstIndex, count, omitHashes, difficulty);
+					}
+				}));
+			}
+
+			ArrayList<Block> blocks = new ArrayList<Block>();
+			ArrayList<String> hashes = new ArrayList<String>();
+
+			for (Future<Chunk> future : chunks) {
+
+				Chunk chunk = future.get();
+				blocks.addAll(chunk.blocks);
+				hashes.addAll(chunk.hashes);
+			}
+
+			// Checking the links between the chunks
+			BlockChain.relink(blocks, "00000", difficulty);
+
+			BlockChain blockchain = new BlockChain();
+			blockchain.setDifficulty(difficulty);
+			blockchain.reserve(blocks.size());
+
+			for (int i=0; i<blocks.size(); i++) {
+
+				blockchain.add(blocks.get(i), hashes.get(i));
+			}
+
+			return blockchain;
+		}
+
+		catch (InterruptedException e) {
+
+			throw new InterruptedIOException("Interrupted while reading " + filename);
+		}
+
+		catch (ExecutionException e) {
+
+			throw new IOException("Corrupted chunk in " + filename, e.getCause());
+		}
+
+		finally {
+
+			pool.shutdown();
+			in.close();
+		}
+	}
+
+	/**
+	 * Class Chunk holds the blocks decoded from one chunk of an archive
+	 * along with the hashes that were stored for them.
+	 */
+	private static class Chunk {
+
+		// Instance Variables
+		private ArrayList<Block> blocks = new ArrayList<Block>();     // Blocks of the chunk
+		private ArrayList<String> hashes = new ArrayList<String>();  // Stored hashes of the blocks
+	}
+
+	/**
+	 * Decompresses a chunk and rebuilds its blocks. Every block links to the
+	 * hash of the block before it in the chunk, and the first one to the
+	 * previous hash stored at the start of the chunk.
+	 */
+	private static Chunk decode(byte[] compressed, int rawLength, int firstIndex, int count, boolean omitHashes, int difficulty) throws IOException, DataFormatException {
+
+		Inflater inflater = new Inflater();
+		inflater.setInput(compressed);
+		byte[] raw = new byte[rawLength];
+		int length = 0;
+
+		while (length<rawLength && !inflater.finished()) {
+
+			int read = inflater.inflate(raw, length, rawLength-length);
+
+			if (read==0 && inflater.needsInput()) {
+
+				break;
+			}
+
+			length += read;
+		}
+
+		inflater.end();
+
+		if (length!=rawLength) {
+
+			throw new DataFormatException("Chunk is shorter than expected");
+		}
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+		ArrayList<String> dictionary = new ArrayList<String>();
+		Chunk chunk = new Chunk();
+		String previousHash = in.readUTF();
+		int index = firstIndex-1;
+		long time = 0;
+		int amount = 0;
+		byte[] hash = new byte[20];
+
+		for (int i=0; i<count; i++) {
+
+			index += 1+(int) unZigZag(readVarLong(in));
+			time += unZigZag(readVarLong(in));
+			String sender = readAccount(in, dictionary);
+			String receiver = readAccount(in, dictionary);
+			amount += (int) unZigZag(readVarLong(in));
+			String nonce = readString(in);
+
+			Block block = new Block(index, new Timestamp(time), new Transaction(sender, receiver, amount), nonce, previousHash, difficulty);
+
+			if (in.readUnsignedByte()==HASH_TEXT) {
+
+				chunk.hashes.add(readString(in));
+			}
+
+			else if (omitHashes) {
+
+				chunk.hashes.add(block.getHash());
+			}
+
+			else {
+
+				in.readFully(hash);
+				chunk.hashes.add(toHex(hash));
+			}
+
+			chunk.blocks.add(block);
+			previousHash = block.getHash();
+		}
+
+		return chunk;
+	}
+
+	/**
+	 * Reads an account name written by Writer.writeAccount.
+	 */
+	private static String readAccount(DataInputStream in, ArrayList<String> dictionary) throws IOException {
+
+		int id = (int) readVarLong(in);
+
+		if (id==dictionary.size()) {
+
+			dictionary.add(readString(in));
+		}
+
+		return dictionary.get(id);
+	}
+
+	/**
+	 * Writes a string as its length followed by its UTF-8 bytes.
+	 */
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+
+		byte[] bytes = str.getBytes("UTF-8");
+		writeVarLong(out, bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string written by writeString.
+	 */
+	private static String readString(DataInputStream in) throws IOException {
+
+		byte[] bytes = new byte[(int) readVarLong(in)];
+		in.readFully(bytes);
+
+		return new String(bytes, "UTF-8");
+	}
+
+	/**
+	 * Writes a non negative long using 7 bits per byte, the highest bit
+	 * of a byte being set when more bytes follow.
+	 */
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+
+		while ((value & ~0x7FL)!=0) {
+
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * Reads a long written by writeVarLong.
+	 */
+	private static long readVarLong(DataInputStream in) throws IOException {
+
+		long value = 0;
+
+		for (int shift=0; shift<64; shift+=7) {
+
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+
+			if ((b & 0x80)==0) {
+
+				return value;
+			}
+		}
+
+		throw new IOException("Malformed variable length integer");
+	}
+
+	/**
+	 * Maps a signed long to an unsigned one so small negative deltas
+	 * stay small when written with writeVarLong.
+	 */
+	private static long zigZag(long value) {
+
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 * Reverses zigZag.
+	 */
+	private static long unZigZag(long value) {
+
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Checks whether a hash is 40 lowercase hexadecimal characters, the
+	 * only hashes toBytes and toHex convert without changing them.
+	 */
+	private static boolean isHex(String hash) {
+
+		if (hash.length()!=40) {
+
+			return false;
+		}
+
+		for (int i=0; i<40; i++) {
+
+			char c = hash.charAt(i);
+
+			if (!((c>='0' && c<='9') || (c>='a' && c<='f'))) {
+
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Converts a 40 character hexadecimal hash to its 20 bytes.
+	 */
+	private static byte[] toBytes(String hash) {
+
+		if (hash.length()!=40) {
+
+			throw new IllegalArgumentException("Hash has to be 40 hexadecimal characters!!");
+		}
+
+		byte[] bytes = new byte[20];
+
+		for (int i=0; i<20; i++) {
+
+			bytes[i] = (byte) Integer.parseInt(hash.substring(2*i, 2*i+2), 16);
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Converts 20 bytes back to a 40 character hexadecimal hash.
+	 */
+	private static String toHex(byte[] bytes) {
+
+		StringBuilder hex = new StringBuilder(40);
+
+		for (int i=0; i<bytes.length; i++) {
+
+			hex.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+			hex.append(Character.forDigit(bytes[i] & 0xF, 16));
+		}
+
+		return hex.toString();
+	}
+}
@@ -0,0 +1,275 @@
+import java.io.*;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Class ChainGenerator creates large valid blockchains for load testing.
+ * Transactions are drawn between a configurable number of accounts, with a
+ * few accounts taking part in most of them (a Zipf distribution), and no
+ * account ever sends more than it has. Accounts that have nothing to send
+ * receive newly minted bitcoin instead. The blocks are mined and written as
+ * they are generated, so the chain never has to fit in memory.
+ *
+ * The difficulty is written at the start of the chain, so BlockChain.fromFile
+ * and ChainArchive read a chain generated with a lower difficulty back as it
+ * is instead of mining it again.
+ *
+ * Usage: java ChainGenerator -out file [-blocks n] [-accounts n] [-skew s]
+ * [-difficulty d] [-threads t] [-seed s] [-format text|archive]
+ *
+ * @author Said Ghamra
+ * @version 1.0
+ */
+public class ChainGenerator {
+
+	// Constants
+	private static final long GENESIS_TIME = 1231477200000L;    // Timestamp of the first block, same as the files provided
+	private static final int MINT_AMOUNT = 50;                 // Largest amount of bitcoin minted at once
+	private static final double MINT_RATE = 0.05;             // Share of the blocks that mint new bitcoin
+
+	// Instance Variables
+	private int accounts;                    // Number of accounts
+	private double[] cumulative;            // Cumulative probability of picking each account
+	private int[] balances;                // Balance of every account
+	private Random random;                // Random number generator, seeded for repeatable chains
+	private long time;                   // Timestamp of the last block generated
+	private MiningPool miner;           // Threads mining the blocks
+	private int difficulty;           // Number of zeros the hash of every block begins with
+
+	/**
+	 * Constructor method for the class ChainGenerator.
+	 *
+	 * @param  accounts Int containing the number of accounts.
+	 * @param  skew     Double containing the Zipf exponent, 0 for every account being as likely.
+	 * @param  threads  Int containing the number of threads mining each block.
+	 * @param  seed     Long containing the seed of the random number generator.
+	 */
+	public ChainGenerator(int accounts, double skew, int threads, long seed) {
+
+		this(accounts, skew, threads, seed, Block.DEFAULT_DIFFICULTY);
+	}
+
+	/**
+	 * Constructor method for a ChainGenerator mining at another difficulty
+	 * than the default, to build large chains quickly.
+	 *
+	 * @param  accounts   Int containing the number of accounts.
+	 * @param  skew       Double containing the Zipf exponent, 0 for every account being as likely.
+	 * @param  threads    Int containing the number of threads mining each block.
+	 * @param  seed       Long containing the seed of the random number generator.
+	 * @param  difficulty Int containing the number of zeros the hash of every block begins with.
+	 */
+	public ChainGenerator(int accounts, double skew, int threads, long seed, int difficulty) {
+
+		Block.target(difficulty);
+
+		if (accounts<2 || threads<1) {
+
+			throw new IllegalArgumentException("There have to be at least 2 accounts and 1 thread!!");
+		}
+
+		this.accounts = accounts;
+		this.balances = new int[accounts];
+		this.random = new Random(seed);
+		this.time = GENESIS_TIME;
+		this.difficulty = difficulty;
+
+		this.miner = new MiningPool(threads);
+
+		// The account of rank k is picked with a probability proportional to 1/k^skew
+		this.cumulative = new double[accounts];
+		double total = 0;
+
+		for (int k=0; k<accounts; k++) {
+
+			total += 1/Math.pow(k+1, skew);
+			cumulative[k] = total;
+		}
+
+		for (int k=0; k<accounts; k++) {
+
+			cumulative[k] /= total;
+		}
+	}
+
+	/**
+	 * Returns the name of an account.
+	 *
+	 * @param  account int containing the number of the account.
+	 * @return         a String containing the name of the account.
+	 */
+	public static String name(int account) {
+
+		return "user" + account;
+	}
+
+	/**
+	 * Method generate creates a chain of a certain number of blocks and
+	 * hands every block to a consumer as soon as it is mined.
+	 *
+	 * @param  blocks      int containing the number of blocks to be generated.
+	 * @param  out         ChainOutput receiving the blocks in order.
+	 * @throws IOException if the consumer can't write a block.
+	 */
+	public void generate(int blocks, ChainOutput out) throws IOException {
+
+		String previousHash = "00000";
+
+		for (int index=0; index<blocks; index++) {
+
+			time += 1+random.nextInt(600000);
+			Block block = miner.mine(index, new Timestamp(time), nextTransaction(index), previousHash, difficulty);
+
+			out.write(block);
+			previousHash = block.getHash();
+		}
+	}
+
+	/**
+	 * Method to stop the threads mining the blocks.
+	 */
+	public void shutdown() {
+
+		miner.shutdown();
+	}
+
+	/**
+	 * Interface implemented by anything the generated blocks are written to.
+	 */
+	public interface ChainOutput {
+
+		/**
+		 * Called with every block generated, in order.
+		 *
+		 * @param  block       the Block generated.
+		 * @throws IOException if the block can't be written.
+		 */
+		void write(Block block) throws IOException;
+	}
+
+	/**
+	 * Picks the next transaction. The first one mints bitcoin, like the files
+	 * provided, and so does any transaction whose sender has nothing to send.
+	 */
+	private Transaction nextTransaction(int index) {
+
+		int sender = pick();
+		int receiver = pick();
+
+		if (receiver==sender) {
+
+			receiver = (receiver+1)%accounts;
+		}
+
+		if (index==0 || balances[sender]==0 || random.nextDouble()<MINT_RATE) {
+
+			int amount = 1+random.nextInt(MINT_AMOUNT);
+			balances[receiver] += amount;
+
+			return new Transaction("bitcoin", name(receiver), amount);
+		}
+
+		int amount = 1+random.nextInt(balances[sender]);
+		balances[sender] -= amount;
+		balances[receiver] += amount;
+
+		return new Transaction(name(sender), name(receiver), amount);
+	}
+
+	/**
+	 * Picks an account following the Zipf distribution.
+	 */
+	private int pick() {
+
+		int k = Arrays.binarySearch(cumulative, random.nextDouble());
+
+		return Math.min(k<0 ? -k-1 : k, accounts-1);
+	}
+
+	/**
+	 * The main method reads the options, generates the chain and writes it
+	 * to a text file in the format of BlockChain.toFile or to an archive in
+	 * the format of ChainArchive.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		String out = null;
+		String format = "text";
+		int blocks = 1000;
+		int accounts = 100;
+		double skew = 1.0;
+		int difficulty = Block.DEFAULT_DIFFICULTY;
+		int threads = 1;
+		long seed = 2110;
+
+		// Reading the options, each one followed by its value
+		for (int i=0; i+1<args.length; i+=2) {
+
+			String value = args[i+1];
+
+			if (args[i].equals("-out")) out = value;
+			else if (args[i].equals("-format")) format = value;
+			else if (args[i].equals("-blocks")) blocks = Integer.parseInt(value);
+			else if (args[i].equals("-accounts")) accounts = Integer.parseInt(value);
+			else if (args[i].equals("-skew")) skew = Double.parseDouble(value);
+			else if (args[i].equals("-difficulty")) difficulty = Integer.parseInt(value);
+			else if (args[i].equals("-threads")) threads = Integer.parseInt(value);
+			else if (args[i].equals("-seed")) seed = Long.parseLong(value);
+			else throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+
+		if (out==null) {
+
+			System.out.println("Usage: java ChainGenerator -out file [-blocks n] [-accounts n] [-skew s] [-difficulty d] [-threads t] [-seed s] [-format text|archive]");
+			return;
+		}
+
+		ChainGenerator generator = new ChainGenerator(accounts, skew, threads, seed, difficulty);
+		long start = System.currentTimeMillis();
+
+		try {
+
+			if (format.equals("archive")) {
+
+				final ChainArchive.Writer writer = new ChainArchive.Writer(out, ChainArchive.DEFAULT_CHUNK_SIZE, false, difficulty);
+
+				generator.generate(blocks, new ChainOutput() {
+					public void write(Block block) throws IOException {
+
+						writer.append(block);
+					}
+				});
+
+				writer.close();
+			}
+
+			else if (format.equals("text")) {
+
+				final BufferedWriter writer = new BufferedWriter(new FileWriter(out), 1 << 16);
+				BlockChain.writeDifficulty(writer, difficulty);
+
+				generator.generate(blocks, new ChainOutput() {
+					public void write(Block block) throws IOException {
+
+						BlockChain.writeBlock(writer, block);
+					}
+				});
+
+				writer.close();
+			}
+
+			else {
+
+				throw new IllegalArgumentException("Format has to be text or archive!!");
+			}
+		}
+
+		finally {
+
+			generator.shutdown();
+		}
+
+		long elapsed = Math.max(1, System.currentTimeMillis()-start);
+		System.out.println(blocks + " blocks written to " + out + " in " + elapsed + " ms (" + String.format("%.1f", blocks*1000.0/elapsed) + " blocks/s)");
+	}
+}
@@ -0,0 +1,280 @@
+import java.sql.Timestamp;
+
+/**
+ * Class MiningJob represents the proof of work for one block as a job
+ * that can be run for a limited time, cancelled from another thread and
+ * resumed later. Instead of trying random nonces, the job counts through
+ * every nonce in order, so the position it stopped at (its cursor) is all
+ * that's needed to pick up where it left off.
+ *
+ * @author Said Ghamra
+ * @version 1.0
+ */
+public class MiningJob {
+
+	/**
+	 * Result of running a mining job.
+	 */
+	public enum Status {
+		FOUND,       // A nonce giving a valid hash was found
+		EXPIRED,    // The time budget ran out first
+		CANCELLED  // The job was cancelled first
+	}
+
+	/**
+	 * Interface implemented by anything that wants to follow the
+	 * progress of a mining job.
+	 */
+	public interface ProgressListener {
+
+		/**
+		 * Called every time the job has tried a certain number of nonces.
+		 *
+		 * @param job   the MiningJob making progress.
+		 * @param tried a long containing the number of nonces tried so far by this job.
+		 */
+		void progress(MiningJob job, long tried);
+	}
+
+	// Constants
+	public static final long DEFAULT_PROGRESS_INTERVAL = 1 << 20;    // Default number of nonces tried between two progress reports
+
+	// Instance Variables
+	private int index;                            // Index of the block being mined
+	private Timestamp timestamp;                 // Timestamp of the block being mined
+	private Transaction transaction;            // Transaction of the block being mined
+	private String previousHash;               // Previous hash of the block being mined
+	private String target;                    // String the hash of the block has to begin with
+	private volatile long cursor;             // Number of the next nonce to be tried
+	private volatile long tried;             // Number of nonces tried by this job
+	private volatile boolean cancelled;     // Whether the job was cancelled
+	private ProgressListener listener;     // Listener told about the progress, null if there is none
+	private long progressInterval;        // Number of nonces tried between two progress reports
+	private Block block;                 // The mined block, null until a nonce is found
+
+	/**
+	 * Constructor method for a job starting from the first nonce.
+	 *
+	 * @param  index        Int containing the index of the block in the list.
+	 * @param  timestamp    Timestamp object containing the time the transaction was made.
+	 * @param  transaction  Transaction object containing the transaction details.
+	 * @param  previousHash String containing the previous hash of the block.
+	 */
+	public MiningJob (int index, Timestamp timestamp, Transaction transaction, String previousHash) {
+
+		this(index, timestamp, transaction, previousHash, 0);
+	}
+
+	/**
+	 * Constructor method for a job resuming from a cursor saved with getCursor.
+	 *
+	 * @param  index        Int containing the index of the block in the list.
+	 * @param  timestamp    Timestamp object containing the time the transaction was made.
+	 * @param  transaction  Transaction object containing the transaction details.
+	 * @param  previousHash String containing the previous hash of the block.
+	 * @param  cursor       Long containing the number of the first nonce to be tried.
+	 */
+	public MiningJob (int index, Timestamp timestamp, Transaction transaction, String previousHash, long cursor) {
+
+		this(index, timestamp, transaction, previousHash, cursor, Block.DEFAULT_DIFFICULTY);
+	}
+
+	/**
+	 * Constructor method for a job mining a block of a blockchain whose
+	 * difficulty isn't the default one, see BlockChain.getDifficulty.
+	 *
+	 * @param  index        Int containing the index of the block in the list.
+	 * @param  timestamp    Timestamp object containing the time the transaction was made.
+	 * @param  transaction  Transaction object containing the transaction details.
+	 * @param  previousHash String containing the previous hash of the block.
+	 * @param  cursor       Long containing the number of the first nonce to be tried.
+	 * @param  difficulty   Int containing the number of zeros the hash has to begin with.
+	 */
+	public MiningJob (int index, Timestamp timestamp, Transaction transaction, String previousHash, long cursor, int difficulty) {
+
+		if (index<0 || cursor<0) {
+
+			throw new IllegalArgumentException("Index and cursor can't be negative!!");
+		}
+
+		if (timestamp==null || transaction==null || previousHash==null) {
+
+			throw new NullPointerException("Mining job inputs can't be null!!");
+		}
+
+		this.index=index;
+		this.timestamp=timestamp;
+		this.transaction=transaction;
+		this.previousHash=previousHash;
+		this.target=Block.target(difficulty);
+		this.cursor=cursor;
+		this.progressInterval=DEFAULT_PROGRESS_INTERVAL;
+	}
+
+	/**
+	 * Method run tries nonces until one gives a hash beginning with the
+	 * zeros of its difficulty, the time budget runs out or the job is
+	 * cancelled. Running a job that expired again continues from where it
+	 * stopped.
+	 *
+	 * @param  budgetMillis long containing the number of milliseconds the job may run, 0 for no limit.
+	 * @return              the status of the job when it stopped.
+	 */
+	public Status run(long budgetMillis) {
+
+		long deadline = budgetMillis>0 ? System.currentTimeMillis()+budgetMillis : Long.MAX_VALUE;
+		long nextReport = tried+progressInterval;
+
+		// The part of the block's string representation before and after the nonce, see Block.toString
+		String head = timestamp.toString() + ":" + transaction.toString() + ".";
+		String[] nonces = new String[Sha1Batch.LANES];
+		String[] candidates = new String[Sha1Batch.LANES];
+
+		while (block==null) {
+
+			if (cancelled) {
+
+				return Status.CANCELLED;
+			}
+
+			if (System.currentTimeMillis()>=deadline) {
+
+				return Status.EXPIRED;
+			}
+
+			// Trying the next nonces all at once
+			for (int l=0; l<nonces.length; l++) {
+
+				nonces[l] = nonce(cursor+l);
+				candidates[l] = head + nonces[l] + previousHash;
+			}
+
+			String[] hashes;
+
+			try {
+
+				hashes = Sha1Batch.hash(candidates);
+			}
+
+			catch (Exception e) {
+
+				throw new IllegalStateException("Whoops! Couldn't hash the block!", e);
+			}
+
+			for (int l=0; l<hashes.length && block==null; l++) {
+
+				if (hashes[l].startsWith(target)) {
+
+					block = new Block(index, timestamp, transaction, nonces[l], previousHash, hashes[l]);
+					cursor += l;
+					tried += l+1;
+				}
+			}
+
+			if (block==null) {
+
+				cursor += nonces.length;
+				tried += nonces.length;
+			}
+
+			if (listener!=null && tried>=nextReport) {
+
+				listener.progress(this, tried);
+				nextReport = tried+progressInterval;
+			}
+		}
+
+		return Status.FOUND;
+	}
+
+	/**
+	 * Method to cancel the job. It can be called from any thread and the
+	 * job stops the next time it checks, at most one batch of nonces later.
+	 */
+	public void cancel() {
+
+		cancelled = true;
+	}
+
+	/**
+	 * Getter method for whether the job was cancelled.
+	 *
+	 * @return true if the job was cancelled, false otherwise.
+	 */
+	public boolean isCancelled() {
+
+		return cancelled;
+	}
+
+	/**
+	 * Getter method for the cursor of the job. Giving it to a new job
+	 * for the same block resumes the search where this job stopped. Once
+	 * the block is mined, the cursor is the number of the winning nonce.
+	 *
+	 * @return a long containing the number of the next nonce to be tried.
+	 */
+	public long getCursor() {
+
+		return cursor;
+	}
+
+	/**
+	 * Getter method for the number of nonces tried by this job.
+	 *
+	 * @return a long containing the number of nonces tried.
+	 */
+	public long getTried() {
+
+		return tried;
+	}
+
+	/**
+	 * Getter method for the mined block.
+	 *
+	 * @return the mined block, or null if no nonce was found yet.
+	 */
+	public Block getBlock() {
+
+		return block;
+	}
+
+	/**
+	 * Setter method for the listener told about the progress of the job.
+	 *
+	 * @param listener ProgressListener to be told, null for none.
+	 * @param interval long containing the number of nonces tried between two reports.
+	 */
+	public void setProgressListener(ProgressListener listener, long interval) {
+
+		if (interval<=0) {
+
+			throw new IllegalArgumentException("Interval has to be positive!!");
+		}
+
+		this.listener=listener;
+		this.progressInterval=interval;
+	}
+
+	/**
+	 * Converts the number of a nonce to the nonce itself. Every number gives
+	 * a different string of ASCII characters in the range [33,126], from the
+	 * shortest strings to the longest.
+	 *
+	 * @param  number long containing the number of the nonce.
+	 * @return        a String containing the nonce.
+	 */
+	static String nonce(long number) {
+
+		StringBuilder nonce = new StringBuilder();
+		long n = number+1;
+
+		while (n>0) {
+
+			n--;
+			nonce.append((char) (n%94+33));
+			n /= 94;
+		}
+
+		return nonce.reverse().toString();
+	}
+}
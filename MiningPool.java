@@ -0,0 +1,134 @@
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Class MiningPool mines blocks on several threads at once. Every thread
+ * runs a MiningJob over its own range of nonces, so no nonce is tried twice,
+ * and the other jobs are cancelled as soon as one of them finds a nonce.
+ * With a single thread the job runs on the calling thread.
+ *
+ * @author Said Ghamra
+ * @version 1.0
+ */
+public class MiningPool {
+
+	// Constants
+	private static final long RANGE = 1L << 40;    // Number of nonces given to each thread while mining a block
+
+	// Instance Variables
+	private ExecutorService pool;     // Threads mining the blocks, null when mining on the calling thread
+	private int threads;             // Number of threads mining each block
+	private long tried;             // Number of nonces tried by all the jobs so far
+
+	/**
+	 * Constructor method for the class MiningPool.
+	 *
+	 * @param  threads Int containing the number of threads mining each block.
+	 */
+	public MiningPool(int threads) {
+
+		if (threads<1) {
+
+			throw new IllegalArgumentException("There has to be at least 1 thread!!");
+		}
+
+		this.threads = threads;
+
+		if (threads>1) {
+
+			this.pool = Executors.newFixedThreadPool(threads);
+		}
+	}
+
+	/**
+	 * Mines a block. With more than one thread, every thread searches its
+	 * own range of nonces and the others are cancelled once one succeeds.
+	 *
+	 * @param  index        Int containing the index of the block in the list.
+	 * @param  timestamp    Timestamp object containing the time the transaction was made.
+	 * @param  transaction  Transaction object containing the transaction details.
+	 * @param  previousHash String containing the previous hash of the block.
+	 * @param  difficulty   Int containing the number of zeros the hash has to begin with.
+	 * @return              the mined block.
+	 */
+	public Block mine(int index, Timestamp timestamp, Transaction transaction, String previousHash, int difficulty) {
+
+		if (pool==null) {
+
+			MiningJob job = new MiningJob(index, timestamp, transaction, previousHash, 0, difficulty);
+			job.run(0);
+			tried += job.getTried();
+
+			return job.getBlock();
+		}
+
+		final ArrayList<MiningJob> jobs = new ArrayList<MiningJob>();
+		ExecutorCompletionService<MiningJob> done = new ExecutorCompletionService<MiningJob>(pool);
+
+		for (int t=0; t<threads; t++) {
+
+			final MiningJob job = new MiningJob(index, timestamp, transaction, previousHash, t*RANGE, difficulty);
+			jobs.add(job);
+
+			done.submit(new Callable<MiningJob>() {
+				public MiningJob call() {
+
+					job.run(0);
+					return job;
+				}
+			});
+		}
+
+		Block block = null;
+
+		try {
+
+			// Waiting for every job, cancelling the others as soon as one of them finds a nonce
+			for (int t=0; t<threads; t++) {
+
+				MiningJob job = done.take().get();
+				tried += job.getTried();
+
+				if (block==null && job.getBlock()!=null) {
+
+					block = job.getBlock();
+
+					for (MiningJob other : jobs) {
+
+						other.cancel();
+					}
+				}
+			}
+		}
+
+		catch (Exception e) {
+
+			throw new IllegalStateException("Whoops! Mining block " + index + " failed!", e);
+		}
+
+		return block;
+	}
+
+	/**
+	 * Getter method for the number of nonces tried by all the jobs so far,
+	 * including the ones that were cancelled.
+	 *
+	 * @return a long containing the number of nonces tried.
+	 */
+	public long getTried() {
+
+		return tried;
+	}
+
+	/**
+	 * Method to stop the threads mining the blocks.
+	 */
+	public void shutdown() {
+
+		if (pool!=null) {
+
+			pool.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,185 @@
+import java.sql.Timestamp;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Class TransactionAdmission lets many threads submit transactions at the
+ * same time. Every account has an available balance kept in an atomic
+ * counter, and a transaction is admitted only if its amount can be taken
+ * from the sender's counter with a compare-and-set. Two transactions that
+ * together spend more than the sender has can never both be admitted, and
+ * transactions on different accounts never wait for each other. Admitted
+ * transactions are queued and later mined into the blockchain in the order
+ * they were admitted.
+ *
+ * @author Said Ghamra
+ * @version 1.0
+ */
+public class TransactionAdmission {
+
+	// Instance Variables
+	private ConcurrentHashMap<String, AtomicInteger> available;    // Balance every account can still spend
+	private ConcurrentLinkedQueue<Transaction> admitted;          // Transactions admitted but not mined yet
+	private LongAdder admittedCount;                             // Number of transactions admitted, summed only when read
+	private LongAdder rejectedCount;                            // Number of transactions rejected, summed only when read
+
+	/**
+	 * Constructor method for the class TransactionAdmission. The available
+	 * balance of every account starts at its balance in the blockchain.
+	 *
+	 * @param  blockchain BlockChain object the transactions are checked against.
+	 */
+	public TransactionAdmission(BlockChain blockchain) {
+
+		this.available = new ConcurrentHashMap<String, AtomicInteger>();
+		this.admitted = new ConcurrentLinkedQueue<Transaction>();
+		this.admittedCount = new LongAdder();
+		this.rejectedCount = new LongAdder();
+
+		for (String user : blockchain.getAccounts()) {
+
+			available.put(user, new AtomicInteger(blockchain.getBalance(user)));
+		}
+	}
+
+	/**
+	 * Method admit reserves the amount of a transaction from the available
+	 * balance of its sender and queues it. It can be called from any number
+	 * of threads. Like everywhere else, bitcoin can always send since it is
+	 * the account new bitcoin comes from.
+	 *
+	 * @param  trans Transaction object to be admitted.
+	 * @return       true if the transaction was admitted, false if the sender doesn't have enough bitcoin.
+	 */
+	public boolean admit(Transaction trans) {
+
+		// bitcoin is never short, its balance simply goes further below zero
+		if (trans.getSender().equals("bitcoin")) {
+
+			counter(trans.getSender()).addAndGet(-trans.getAmount());
+		}
+
+		else {
+
+			AtomicInteger sender = available.get(trans.getSender());
+
+			// Taking the amount from the sender's counter unless another thread spent it first
+			while (true) {
+
+				int balance = sender==null ? 0 : sender.get();
+
+				if (balance<trans.getAmount()) {
+
+					rejectedCount.increment();
+					return false;
+				}
+
+				if (sender.compareAndSet(balance, balance-trans.getAmount())) {
+
+					break;
+				}
+			}
+		}
+
+		// Queuing the transaction before crediting the receiver, so any transaction spending the credit is queued after it
+		admitted.add(trans);
+		counter(trans.getReceiver()).addAndGet(trans.getAmount());
+		admittedCount.increment();
+
+		return true;
+	}
+
+	/**
+	 * Getter method for the balance an account can still spend.
+	 *
+	 * @param  username String containing the name of the account.
+	 * @return          int value of the available balance of the account.
+	 */
+	public int getAvailable(String username) {
+
+		AtomicInteger balance = available.get(username);
+
+		return balance==null ? 0 : balance.get();
+	}
+
+	/**
+	 * Getter method for the next admitted transaction waiting to be mined.
+	 *
+	 * @return the oldest admitted transaction, or null if there is none.
+	 */
+	public Transaction poll() {
+
+		return admitted.poll();
+	}
+
+	/**
+	 * Method drainTo mines every admitted transaction waiting to be mined
+	 * and adds it to the blockchain. The blockchain is not thread safe, so
+	 * only one thread should drain while others keep admitting.
+	 *
+	 * @param  blockchain BlockChain object the blocks are added to.
+	 * @return            an int containing the number of blocks added.
+	 */
+	public int drainTo(BlockChain blockchain) {
+
+		int added = 0;
+		Transaction trans;
+
+		while ((trans = admitted.poll())!=null) {
+
+			int index = blockchain.getBlockNumbers();
+			String previousHash = index==0 ? "00000" : blockchain.getBlock(index-1).getHash();
+			MiningJob job = new MiningJob(index, new Timestamp(System.currentTimeMillis()), trans, previousHash, 0, blockchain.getDifficulty());
+
+			job.run(0);
+			blockchain.add(job.getBlock());
+			added++;
+		}
+
+		return added;
+	}
+
+	/**
+	 * Getter method for the number of transactions admitted so far.
+	 * Transactions admitted while the count is being summed may or may not
+	 * be included.
+	 *
+	 * @return a long containing the number of transactions admitted.
+	 */
+	public long getAdmittedCount() {
+
+		return admittedCount.sum();
+	}
+
+	/**
+	 * Getter method for the number of transactions rejected so far.
+	 *
+	 * @return a long containing the number of transactions rejected.
+	 */
+	public long getRejectedCount() {
+
+		return rejectedCount.sum();
+	}
+
+	/**
+	 * Returns the counter of an account, creating it the first time the
+	 * account receives bitcoin.
+	 */
+	private AtomicInteger counter(String username) {
+
+		AtomicInteger balance = available.get(username);
+
+		if (balance==null) {
+
+			AtomicInteger created = new AtomicInteger();
+			balance = available.putIfAbsent(username, created);
+
+			if (balance==null) {
+
+				balance = created;
+			}
+		}
+
+		return balance;
+	}
+}
@@ -0,0 +1,317 @@
+import java.util.*;
+
+/**
+ * Class VersionedLedger keeps the balance of every account at every block
+ * height. For every block it stores the sender, receiver and amount of its
+ * transaction, and every K blocks it takes a snapshot of the balances that
+ * changed since the last one. The balance of an account after any block is
+ * found by a binary search for the nearest snapshot, followed by replaying
+ * at most K blocks. A ledger can also start from the balances at a certain
+ * height, for blockchains whose older blocks were pruned.
+ *
+ * @author Said Ghamra
+ * @version 1.0
+ */
+public class VersionedLedger {
+
+	// Constants
+	public static final int DEFAULT_SNAPSHOT_INTERVAL = 1024;    // Default number of blocks between two snapshots
+
+	// Instance Variables
+	private int interval;                         // Number of blocks between two snapshots (K)
+	private HashMap<String, Integer> ids;        // Number given to every account
+	private ArrayList<String> names;            // Name of every account, by number
+	private int[] senders;                     // Sender of the transaction of every block
+	private int[] receivers;                  // Receiver of the transaction of every block
+	private int[] amounts;                   // Amount of the transaction of every block
+	private int base;                       // Number of blocks before the first one recorded, whose balances were given
+	private int height;                    // Number of blocks recorded
+	private int[] balances;                // Current balance of every account
+	private int[][] snapshots;            // Snapshot numbers at which the balance of every account was recorded
+	private int[][] snapshotBalances;    // Balance of every account at each of those snapshots
+	private int[] snapshotCounts;       // Number of snapshots recorded for every account
+	private boolean[] dirty;           // Whether the balance of every account changed since the last snapshot
+	private int[] dirtyIds;           // Accounts whose balance changed since the last snapshot
+	private int dirtyCount;          // Number of accounts in dirtyIds
+
+	/**
+	 * Constructor method for the class VersionedLedger.
+	 *
+	 * @param  interval Int containing the number of blocks between two snapshots.
+	 */
+	public VersionedLedger(int interval) {
+
+		this(interval, new HashMap<String, Integer>(), 0);
+	}
+
+	/**
+	 * Constructor method for a ledger starting after a certain number of
+	 * blocks, with the balances every account had after them. Balances
+	 * before that height can't be asked for.
+	 *
+	 * @param  interval Int containing the number of blocks between two snapshots.
+	 * @param  balances Map containing the balance of every account after the first base blocks.
+	 * @param  base     Int containing the number of blocks the balances account for.
+	 */
+	public VersionedLedger(int interval, Map<String, Integer> balances, int base) {
+
+		if (interval<=0) {
+
+			throw new IllegalArgumentException("Snapshot interval has to be positive!!");
+		}
+
+		this.interval = interval;
+		this.ids = new HashMap<String, Integer>();
+		this.names = new ArrayList<String>();
+		this.senders = new int[1024];
+		this.receivers = new int[1024];
+		this.amounts = new int[1024];
+		this.balances = new int[16];
+		this.snapshots = new int[16][];
+		this.snapshotBalances = new int[16][];
+		this.snapshotCounts = new int[16];
+		this.dirty = new boolean[16];
+		this.dirtyIds = new int[16];
+		this.base = base;
+
+		// The given balances are the balances at snapshot 0
+		for (Map.Entry<String, Integer> entry : balances.entrySet()) {
+
+			int id = id(entry.getKey());
+			this.balances[id] = entry.getValue();
+			record(id, 0);
+		}
+	}
+
+	/**
+	 * Method to record the transaction of the next block.
+	 *
+	 * @param trans Transaction object of the block.
+	 */
+	public void append(Transaction trans) {
+
+		int sender = id(trans.getSender());
+		int receiver = id(trans.getReceiver());
+
+		if (height==senders.length) {
+
+			senders = Arrays.copyOf(senders, height*2);
+			receivers = Arrays.copyOf(receivers, height*2);
+			amounts = Arrays.copyOf(amounts, height*2);
+		}
+
+		senders[height] = sender;
+		receivers[height] = receiver;
+		amounts[height] = trans.getAmount();
+		height++;
+
+		balances[sender] -= trans.getAmount();
+		balances[receiver] += trans.getAmount();
+		markDirty(sender);
+		markDirty(receiver);
+
+		// Every K blocks, recording the balances that changed since the last snapshot
+		if (height%interval==0) {
+
+			int snapshot = height/interval;
+
+			for (int i=0; i<dirtyCount; i++) {
+
+				record(dirtyIds[i], snapshot);
+				dirty[dirtyIds[i]] = false;
+			}
+
+			dirtyCount = 0;
+		}
+	}
+
+	/**
+	 * Getter method for the current balance of an account.
+	 *
+	 * @param  username String containing the name of the account.
+	 * @return          int value of the balance of the account after the last block.
+	 */
+	public int getBalance(String username) {
+
+		Integer id = ids.get(username);
+
+		return id==null ? 0 : balances[id];
+	}
+
+	/**
+	 * Getter method for the balance of an account after a certain block.
+	 *
+	 * @param  username String containing the name of the account.
+	 * @param  height   int containing the index of the block.
+	 * @return          int value of the balance of the account after the block at that index.
+	 */
+	public int getBalance(String username, int height) {
+
+		if (height<0 || height>=base+this.height) {
+
+			throw new IndexOutOfBoundsException("Height: " + height + ", Blocks: " + (base+this.height));
+		}
+
+		if (height<base-1) {
+
+			throw new IllegalArgumentException("Balances before block " + (base-1) + " were pruned!!");
+		}
+
+		Integer id = ids.get(username);
+
+		if (id==null) {
+
+			return 0;
+		}
+
+		// Finding the latest snapshot taken before the block, then replaying the blocks after it
+		int count = height+1-base;
+		int snapshot = count/interval;
+		int balance = balanceAt(id, snapshot);
+
+		for (int i=snapshot*interval; i<count; i++) {
+
+			if (senders[i]==id) {
+
+				balance -= amounts[i];
+			}
+
+			if (receivers[i]==id) {
+
+				balance += amounts[i];
+			}
+		}
+
+		return balance;
+	}
+
+	/**
+	 * Method to check whether an account appears in any block recorded.
+	 *
+	 * @param  username String containing the name of the account.
+	 * @return          true if the account sent or received bitcoin, false otherwise.
+	 */
+	public boolean hasAccount(String username) {
+
+		return ids.containsKey(username);
+	}
+
+	/**
+	 * Getter method for the names of all the accounts recorded, in the
+	 * order they first appeared.
+	 *
+	 * @return a List containing the name of every account.
+	 */
+	public List<String> getAccounts() {
+
+		return Collections.unmodifiableList(names);
+	}
+
+	/**
+	 * Getter method for the number of blocks the ledger accounts for,
+	 * including the blocks before the first one recorded.
+	 *
+	 * @return an int containing the number of blocks.
+	 */
+	public int getHeight() {
+
+		return base+height;
+	}
+
+	/**
+	 * Getter method for the number of blocks between two snapshots.
+	 *
+	 * @return an int containing the snapshot interval.
+	 */
+	public int getSnapshotInterval() {
+
+		return interval;
+	}
+
+	/**
+	 * Returns the number of an account, giving it the next number if it
+	 * wasn't seen before.
+	 */
+	private int id(String name) {
+
+		Integer id = ids.get(name);
+
+		if (id!=null) {
+
+			return id;
+		}
+
+		int next = names.size();
+		ids.put(name, next);
+		names.add(name);
+
+		if (next==balances.length) {
+
+			balances = Arrays.copyOf(balances, next*2);
+			snapshots = Arrays.copyOf(snapshots, next*2);
+			snapshotBalances = Arrays.copyOf(snapshotBalances, next*2);
+			snapshotCounts = Arrays.copyOf(snapshotCounts, next*2);
+			dirty = Arrays.copyOf(dirty, next*2);
+			dirtyIds = Arrays.copyOf(dirtyIds, next*2);
+		}
+
+		return next;
+	}
+
+	/**
+	 * Adds an account to the accounts whose balance changed since the last snapshot.
+	 */
+	private void markDirty(int id) {
+
+		if (!dirty[id]) {
+
+			dirty[id] = true;
+			dirtyIds[dirtyCount++] = id;
+		}
+	}
+
+	/**
+	 * Records the current balance of an account at a snapshot.
+	 */
+	private void record(int id, int snapshot) {
+
+		int count = snapshotCounts[id];
+
+		if (snapshots[id]==null) {
+
+			snapshots[id] = new int[4];
+			snapshotBalances[id] = new int[4];
+		}
+
+		else if (count==snapshots[id].length) {
+
+			snapshots[id] = Arrays.copyOf(snapshots[id], count*2);
+			snapshotBalances[id] = Arrays.copyOf(snapshotBalances[id], count*2);
+		}
+
+		snapshots[id][count] = snapshot;
+		snapshotBalances[id][count] = balances[id];
+		snapshotCounts[id] = count+1;
+	}
+
+	/**
+	 * Returns the balance of an account at a snapshot, i.e. the balance
+	 * recorded at the latest snapshot not after it, or 0 if there is none.
+	 */
+	private int balanceAt(int id, int snapshot) {
+
+		if (snapshotCounts[id]==0) {
+
+			return 0;
+		}
+
+		int i = Arrays.binarySearch(snapshots[id], 0, snapshotCounts[id], snapshot);
+
+		if (i<0) {
+
+			i = -i-2;
+		}
+
+		return i<0 ? 0 : snapshotBalances[id][i];
+	}
+}